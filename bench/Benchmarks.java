@@ -0,0 +1,363 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the game's hot paths: engine ticks, food spawning,
+ * collision checks and painting. Each case warms up, then reports the median
+ * of several timed batches plus bytes allocated per operation.
+ *
+ * Results can be written to CSV and compared against an earlier run, in which
+ * case the process exits with status 1 if any case got slower than allowed.
+ *
+ *   java -Djava.awt.headless=true Benchmarks [--csv out.csv] [--baseline old.csv] [--tolerance 0.10] [--quick]
+ */
+public class Benchmarks {
+    private static final int[] LENGTHS = {10, 100, 1000, 10000};
+    private static final int[] BOARD_SIZES = {35, 128};
+
+    private static class Result {
+        final String name;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    /** One timed batch of work; returns how many operations it performed. */
+    private interface Batch {
+        long run();
+    }
+
+    private static int warmupBatches = 5;
+    private static int timedBatches = 10;
+    private static long selfTimedNanos;  // Set by batches that time only part of their work
+    private static volatile long sink;
+
+    public static void main(String[] args) throws IOException {
+        String csvFile = null;
+        String baselineFile = null;
+        double tolerance = 0.10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--csv": csvFile = args[++i]; break;
+                case "--baseline": baselineFile = args[++i]; break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+                case "--quick": warmupBatches = 2; timedBatches = 3; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        ArrayList<Result> results = new ArrayList<>();
+        System.out.printf("%-36s %14s %12s%n", "benchmark", "ns/op", "bytes/op");
+        for (int size : BOARD_SIZES) {
+            for (int length : LENGTHS) {
+                if (length >= size * size) continue;
+                for (boolean wrap : new boolean[] {false, true}) {
+                    report(results, benchTick(size, length, wrap));
+                }
+                report(results, benchCollision(size, length));
+            }
+            report(results, benchSpawn(size, 0.50));
+            report(results, benchSpawn(size, 0.99));
+        }
+        for (int food : new int[] {1, 100, 1000}) {
+            report(results, benchFoodTick(food));
+        }
+        for (int length : new int[] {10, 100, 1000}) {
+            report(results, benchPaint(length));
+        }
+        for (int length : new int[] {10, 100, 1000}) {
+            report(results, benchPaintReusedGraphics(length));
+        }
+
+        if (csvFile != null) {
+            writeCsv(csvFile, results);
+        }
+        if (baselineFile != null && !checkBaseline(baselineFile, results, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    // --- Cases ---
+
+    /** Steady-state ticks with the snake following a Hamiltonian cycle so it never dies. */
+    private static Result benchTick(int size, int length, boolean wrap) {
+        SnakeEngine engine = newEngine(size, wrap);
+        HamiltonianCycle cycle = new HamiltonianCycle(size, size);
+        Layout layout = cycle.layout(length);
+        return measure("tick/" + size + "x" + size + "/len=" + length + (wrap ? "/wrap" : ""), () -> {
+            layout.place(engine);
+            for (int i = 0; i < 10_000; i++) {
+                engine.step(cycle.next(engine.segmentX(0), engine.segmentY(0)));
+            }
+            return 10_000;
+        });
+    }
+
+    /** Ticks on a board with many food items out, eating whenever the cycle passes one. */
+    private static Result benchFoodTick(int food) {
+        SnakeEngine engine = new SnakeEngine(128, 128, false, SnakeEngine.Difficulty.NORMAL, food, new Random(42));
+        HamiltonianCycle cycle = new HamiltonianCycle(128, 128);
+        Layout layout = cycle.layout(100);
+        return measure("tick/128x128/food=" + food, () -> {
+            layout.place(engine);
+            for (int i = 0; i < 10_000; i++) {
+                engine.step(cycle.next(engine.segmentX(0), engine.segmentY(0)));
+            }
+            return 10_000;
+        });
+    }
+
+    private static Result benchCollision(int size, int length) {
+        SnakeEngine engine = newEngine(size, false);
+        new HamiltonianCycle(size, size).layout(length).place(engine);
+        Random random = new Random(1);
+        int[] xs = new int[4096];
+        int[] ys = new int[4096];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+        return measure("isSnakeAt/" + size + "x" + size + "/len=" + length, () -> {
+            long hits = 0;
+            for (int rep = 0; rep < 64; rep++) {
+                for (int i = 0; i < xs.length; i++) {
+                    if (engine.isSnakeAt(xs[i], ys[i])) hits++;
+                }
+            }
+            sink += hits;
+            return 64L * xs.length;
+        });
+    }
+
+    /** Cost of an eating tick (which includes spawning the next food) at a given board occupancy. */
+    private static Result benchSpawn(int size, double occupancy) {
+        SnakeEngine engine = newEngine(size, false);
+        HamiltonianCycle cycle = new HamiltonianCycle(size, size);
+        Layout layout = cycle.layout((int) (cycle.size() * occupancy));
+        return measure(String.format("spawn/%dx%d/occupancy=%.0f%%", size, size, occupancy * 100), () -> {
+            int meals = 0;
+            while (meals < 200) {
+                layout.place(engine);
+                // Walk until the next meal, timing only the tick that eats. Food off the
+                // cycle (odd board sizes leave a spare row) is never reached, so give up.
+                for (int walked = 0; walked < cycle.size(); walked++) {
+                    char direction = cycle.next(engine.segmentX(0), engine.segmentY(0));
+                    boolean eats = cycle.nextX(engine.segmentX(0), engine.segmentY(0)) == engine.getFoodX()
+                            && cycle.nextY(engine.segmentX(0), engine.segmentY(0)) == engine.getFoodY();
+                    if (!eats) {
+                        engine.step(direction);
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    engine.step(direction);
+                    selfTimedNanos += System.nanoTime() - start;
+                    meals++;
+                    break;
+                }
+            }
+            return 200;
+        });
+    }
+
+    /**
+     * Paints whole frames as the game loop does: a new Graphics per frame,
+     * as the canvas's buffer strategy hands out, disposed after drawing.
+     */
+    private static Result benchPaint(int length) {
+        SnakeEngine engine = newEngine(35, false);
+        HamiltonianCycle cycle = new HamiltonianCycle(35, 35);
+        Layout layout = cycle.layout(length);
+        App app = App.offscreen(engine);
+        BufferedImage frame = new BufferedImage(app.getWidth(), app.getHeight(), BufferedImage.TYPE_INT_RGB);
+        return measure("paint/35x35/len=" + length, () -> {
+            layout.place(engine);
+            for (int i = 0; i < 200; i++) {
+                engine.step(cycle.next(engine.segmentX(0), engine.segmentY(0)));
+                Graphics2D g2d = frame.createGraphics();
+                app.drawFrame(g2d);
+                g2d.dispose();
+            }
+            return 200;
+        });
+    }
+
+    /** The same frames drawn through one Graphics, to separate drawFrame()'s own cost from getting a Graphics. */
+    private static Result benchPaintReusedGraphics(int length) {
+        SnakeEngine engine = newEngine(35, false);
+        HamiltonianCycle cycle = new HamiltonianCycle(35, 35);
+        Layout layout = cycle.layout(length);
+        App app = App.offscreen(engine);
+        BufferedImage frame = new BufferedImage(app.getWidth(), app.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        return measure("paint/35x35/len=" + length + "/reused-graphics", () -> {
+            layout.place(engine);
+            for (int i = 0; i < 200; i++) {
+                engine.step(cycle.next(engine.segmentX(0), engine.segmentY(0)));
+                app.drawFrame(g2d);
+            }
+            return 200;
+        });
+    }
+
+    // --- Harness ---
+
+    private static void report(ArrayList<Result> results, Result r) {
+        System.out.printf("%-36s %14.1f %12.1f%n", r.name, r.nanosPerOp, r.bytesPerOp);
+        results.add(r);
+    }
+
+    private static SnakeEngine newEngine(int size, boolean wrap) {
+        return new SnakeEngine(size, size, wrap, SnakeEngine.Difficulty.NORMAL, new Random(42));
+    }
+
+    /**
+     * Runs warmup and timed batches and keeps the median. Batches that only want
+     * part of their work timed add that part to selfTimedNanos.
+     */
+    private static Result measure(String name, Batch batch) {
+        for (int i = 0; i < warmupBatches; i++) {
+            batch.run();
+        }
+        double[] nanosPerOp = new double[timedBatches];
+        double bytesPerOp = 0;
+        for (int i = 0; i < timedBatches; i++) {
+            selfTimedNanos = 0;
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = batch.run();
+            long elapsed = System.nanoTime() - start;
+            long bytes = allocatedBytes() - bytesBefore;
+            if (selfTimedNanos > 0) {
+                elapsed = selfTimedNanos;
+            }
+            nanosPerOp[i] = (double) elapsed / ops;
+            bytesPerOp = Math.max(bytesPerOp, (double) bytes / ops);
+        }
+        Arrays.sort(nanosPerOp);
+        return new Result(name, nanosPerOp[timedBatches / 2], bytesPerOp);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void writeCsv(String file, ArrayList<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            writer.println("benchmark,ns_per_op,bytes_per_op");
+            for (Result r : results) {
+                writer.printf("%s,%.3f,%.3f%n", r.name, r.nanosPerOp, r.bytesPerOp);
+            }
+        }
+    }
+
+    /** Returns false if any case is slower than its baseline by more than the tolerance. */
+    private static boolean checkBaseline(String file, ArrayList<Result> results, double tolerance) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine(); // Header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                baseline.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+
+        boolean ok = true;
+        for (Result r : results) {
+            Double before = baseline.get(r.name);
+            if (before == null) continue;
+            double change = r.nanosPerOp / before - 1.0;
+            if (change > tolerance) {
+                System.out.printf("REGRESSION %s: %.1f -> %.1f ns/op (%+.0f%%)%n", r.name, before, r.nanosPerOp, change * 100);
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * A cycle through every cell of the largest even-height part of the board:
+     * rows are swept in a serpentine over columns 1..w-1 and column 0 leads
+     * back to the top. A snake following it never runs into itself.
+     */
+    private static class HamiltonianCycle {
+        private final int width;
+        private final int height;
+
+        HamiltonianCycle(int width, int height) {
+            this.width = width;
+            this.height = height - (height % 2);
+        }
+
+        int size() {
+            return width * height;
+        }
+
+        char next(int x, int y) {
+            if (x == 0) return y == 0 ? 'R' : 'U';
+            if (y % 2 == 0) return x < width - 1 ? 'R' : 'D';
+            if (x > 1) return 'L';
+            return y < height - 1 ? 'D' : 'L';
+        }
+
+        int nextX(int x, int y) {
+            char d = next(x, y);
+            return d == 'L' ? x - 1 : d == 'R' ? x + 1 : x;
+        }
+
+        int nextY(int x, int y) {
+            char d = next(x, y);
+            return d == 'U' ? y - 1 : d == 'D' ? y + 1 : y;
+        }
+
+        /** A snake of the given length along the cycle, tail at the top-left corner. */
+        Layout layout(int length) {
+            int[] xs = new int[length];
+            int[] ys = new int[length];
+            int x = 0, y = 0;
+            for (int i = length - 1; i >= 0; i--) {
+                xs[i] = x;
+                ys[i] = y;
+                int nx = nextX(x, y);
+                y = nextY(x, y);
+                x = nx;
+            }
+            return new Layout(xs, ys, next(xs[0], ys[0]));
+        }
+    }
+
+    /** A prebuilt snake, so resetting between batches does not allocate. */
+    private static class Layout {
+        final int[] xs;
+        final int[] ys;
+        final char direction;
+
+        Layout(int[] xs, int[] ys, char direction) {
+            this.xs = xs;
+            this.ys = ys;
+            this.direction = direction;
+        }
+
+        void place(SnakeEngine engine) {
+            engine.loadSnake(xs, ys, xs.length, direction);
+        }
+    }
+}
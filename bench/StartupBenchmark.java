@@ -0,0 +1,77 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures time to first paint: how long after launching a fresh JVM the game
+ * paints its title screen. Each run starts the jar with
+ * -Dsnake.exitAfterFirstPaint, which makes the game print the wall-clock time
+ * of that paint and exit. Runs are repeated without class data sharing, with
+ * the JDK's default archive, and with the game's AppCDS archive if one was
+ * built, and the median and 90th percentile of each are reported.
+ *
+ *   build/build.sh
+ *   java StartupBenchmark [--jar dist/snake.jar] [--archive dist/snake.jsa] [--runs 10] [--java java]
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String jar = "dist/snake.jar";
+        String archive = "dist/snake.jsa";
+        String java = "java";
+        int runs = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--jar": jar = args[++i]; break;
+                case "--archive": archive = args[++i]; break;
+                case "--runs": runs = Integer.parseInt(args[++i]); break;
+                case "--java": java = args[++i]; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        measure("no CDS", runs, java, "-Xshare:off", jar);
+        measure("JDK CDS", runs, java, "-Xshare:auto", jar);
+        if (new File(archive).isFile()) {
+            measure("AppCDS", runs, java, "-XX:SharedArchiveFile=" + archive, jar);
+        } else {
+            System.out.println("AppCDS: no archive at " + archive + " (run build/build.sh)");
+        }
+    }
+
+    private static void measure(String name, int runs, String java, String shareOption, String jar)
+            throws IOException, InterruptedException {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = launch(java, shareOption, jar);
+            if (millis[i] < 0) {
+                System.out.println(name + ": the game exited without painting (is there a display?)");
+                return;
+            }
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-8s time to first paint: p50 %d ms, p90 %d ms, min %d ms over %d runs%n",
+                name, millis[runs / 2], millis[Math.min(runs - 1, (int) Math.ceil(runs * 0.9) - 1)], millis[0], runs);
+    }
+
+    /** Milliseconds from launching the JVM to the game's first paint, or -1 if it never painted. */
+    private static long launch(String java, String shareOption, String jar) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(java, shareOption, "-Dsnake.exitAfterFirstPaint=true", "-jar", jar));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+        long start = System.currentTimeMillis();
+        Process process = builder.start();
+        long paintedAt = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("first-paint ")) {
+                    paintedAt = Long.parseLong(line.substring("first-paint ".length()).trim());
+                }
+            }
+        }
+        process.waitFor();
+        return paintedAt < 0 ? -1 : paintedAt - start;
+    }
+}
@@ -0,0 +1,155 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures VectorEnv throughput with random actions, and checks that its
+ * boards play exactly the games a SnakeEngine would.
+ *
+ *   java VectorEnvBenchmark [--boards 4096] [--size 16] [--steps 2000] [--threads N]
+ *                           [--wrap] [--difficulty NORMAL] [--direct] [--verify 64]
+ */
+public class VectorEnvBenchmark {
+    public static void main(String[] args) {
+        int boards = 4096;
+        int size = 16;
+        int steps = 2000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean wrap = false;
+        boolean direct = false;
+        int verify = 64;
+        SnakeEngine.Difficulty difficulty = SnakeEngine.Difficulty.NORMAL;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--boards": boards = Integer.parseInt(args[++i]); break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--steps": steps = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--wrap": wrap = true; break;
+                case "--direct": direct = true; break;
+                case "--verify": verify = Integer.parseInt(args[++i]); break;
+                case "--difficulty": difficulty = SnakeEngine.Difficulty.valueOf(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        if (verify > 0) {
+            int mismatches = verify(Math.min(verify, boards), size, steps, wrap, difficulty);
+            System.out.printf("Verified %d boards for %d steps against SnakeEngine: %s%n",
+                    Math.min(verify, boards), steps, mismatches == 0 ? "identical" : mismatches + " MISMATCHED");
+            if (mismatches > 0) System.exit(1);
+        }
+
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        VectorEnv env = new VectorEnv(boards, size, size, wrap, difficulty, FoodOdds.DEFAULT, 1, pool);
+        if (direct) {
+            env.bind(ByteBuffer.allocateDirect(4 * boards * env.observationSize())
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer());
+        } else {
+            env.bind(new float[boards * env.observationSize()]);
+        }
+        int[] actions = new int[boards];
+        float[] rewards = new float[boards];
+        boolean[] dones = new boolean[boards];
+        Random random = new Random(2);
+
+        // Half the run warms up the JIT, the other half is timed
+        long start = 0;
+        long games = 0;
+        double totalReward = 0;
+        for (int t = 0; t < steps * 2; t++) {
+            if (t == steps) {
+                start = System.nanoTime();
+                games = 0;
+                totalReward = 0;
+            }
+            int roll = random.nextInt();
+            for (int b = 0; b < boards; b++) {
+                // Mostly keep going, sometimes turn, cheaply and without a Random call per board
+                int bits = (roll >>> (b & 15)) ^ (b * 0x9E3779B9);
+                actions[b] = (bits & 7) < 6 ? VectorEnv.KEEP_DIRECTION : (bits >>> 3) & 3;
+            }
+            env.stepAll(actions, rewards, dones);
+            for (int b = 0; b < boards; b++) {
+                if (dones[b]) games++;
+                totalReward += rewards[b];
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (pool != null) pool.shutdown();
+        System.out.printf("%d boards of %dx%d on %d threads (%s observations): %,.0f env-steps/s, %,d games ended, mean reward %.4f%n",
+                boards, size, size, threads, direct ? "direct" : "array",
+                (double) boards * steps / seconds, games, totalReward / ((double) boards * steps));
+    }
+
+    /** Plays the same random actions on VectorEnv boards and on SnakeEngines; returns how many boards differed. */
+    private static int verify(int boards, int size, int steps, boolean wrap, SnakeEngine.Difficulty difficulty) {
+        VectorEnv env = new VectorEnv(boards, size, size, wrap, difficulty, FoodOdds.DEFAULT, 7, null);
+        float[] observations = new float[boards * env.observationSize()];
+        env.bind(observations);
+        SnakeEngine[] engines = new SnakeEngine[boards];
+        for (int b = 0; b < boards; b++) {
+            engines[b] = new SnakeEngine(size, size, wrap, difficulty, new Random(env.seed(b)));
+        }
+        int[] actions = new int[boards];
+        float[] rewards = new float[boards];
+        boolean[] dones = new boolean[boards];
+        boolean[] mismatched = new boolean[boards];
+        Random random = new Random(3);
+        for (int t = 0; t < steps; t++) {
+            for (int b = 0; b < boards; b++) {
+                // Greedy-ish play reaches long snakes and every power-up; random play rarely does
+                SnakeEngine engine = engines[b];
+                char choice = SnakePolicy.GREEDY.choose(engine);
+                if (random.nextInt(10) == 0) choice = SnakePolicy.DIRECTIONS[random.nextInt(4)];
+                actions[b] = new String(SnakePolicy.DIRECTIONS).indexOf(choice);
+            }
+            env.stepAll(actions, rewards, dones);
+            for (int b = 0; b < boards; b++) {
+                SnakeEngine engine = engines[b];
+                int before = engine.length();
+                boolean died = engine.step(SnakePolicy.DIRECTIONS[actions[b]]) == SnakeEngine.StepResult.DIED;
+                float reward = died ? -1f : engine.length() - before;
+                if (died) engine.reset();
+                if (dones[b] != died || rewards[b] != reward || !sameState(env, b, engine, observations)) {
+                    mismatched[b] = true;
+                }
+            }
+        }
+        int count = 0;
+        for (boolean m : mismatched) if (m) count++;
+        return count;
+    }
+
+    private static boolean sameState(VectorEnv env, int b, SnakeEngine engine, float[] observations) {
+        if (env.length(b) != engine.length() || env.getDirection(b) != engine.getDirection()
+                || env.getFoodX(b) != engine.getFoodX() || env.getFoodY(b) != engine.getFoodY()
+                || env.getFoodType(b) != engine.getFoodType()
+                || env.getBoostRemaining(b) != engine.getBoostRemaining()
+                || env.getGhostRemaining(b) != engine.getGhostRemaining()) {
+            return false;
+        }
+        for (int i = 0; i < engine.length(); i++) {
+            if (env.segmentX(b, i) != engine.segmentX(i) || env.segmentY(b, i) != engine.segmentY(i)) return false;
+        }
+        int width = engine.getBoardWidth();
+        int cells = width * engine.getBoardHeight();
+        int base = b * env.observationSize();
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell % width;
+            int y = cell / width;
+            boolean head = x == engine.segmentX(0) && y == engine.segmentY(0);
+            boolean food = engine.getFoodType() != null && x == engine.getFoodX() && y == engine.getFoodY();
+            if ((observations[base + cell] != 0) != engine.isSnakeAt(x, y)
+                    || (observations[base + cells + cell] != 0) != head
+                    || (observations[base + 2 * cells + cell] != 0) != food) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+#!/bin/sh
+# Builds a runnable dist/snake.jar and, on JDK 13 or later, an AppCDS archive
+# (dist/snake.jsa) of the classes the game loads up to its first title screen
+# paint. Run from anywhere; needs a display for the archive training run.
+#
+#   build/build.sh
+#   java -XX:SharedArchiveFile=dist/snake.jsa -jar dist/snake.jar
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf out/classes
+mkdir -p out/classes dist
+javac --release 8 -d out/classes $(ls src/*.java | grep -v 'src/JfrEvents.java')
+# JFR events need Java 11; without them telemetry just skips JFR
+javac --release 11 -cp out/classes -d out/classes src/JfrEvents.java 2>/dev/null \
+    || echo "JfrEvents skipped (needs JDK 11 or later)"
+for sound in src/*.wav; do
+    [ -f "$sound" ] && cp "$sound" out/classes/
+done
+
+printf 'Main-Class: App\n' > out/manifest.txt
+jar cfm dist/snake.jar out/manifest.txt -C out/classes .
+echo "Built dist/snake.jar"
+
+# Training run: start the game, let it paint the title screen once, and dump
+# every class it loaded on the way into the archive as the JVM exits
+rm -f dist/snake.jsa
+if java -XX:ArchiveClassesAtExit=dist/snake.jsa -Dsnake.exitAfterFirstPaint=true -jar dist/snake.jar 2> /dev/null \
+        | grep -q '^first-paint' && [ -f dist/snake.jsa ]; then
+    echo "Built dist/snake.jsa; run with: java -XX:SharedArchiveFile=dist/snake.jsa -jar dist/snake.jar"
+else
+    rm -f dist/snake.jsa
+    echo "No AppCDS archive (needs JDK 13 or later and a display); the jar runs without it"
+fi
@@ -1,45 +1,18 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
 import java.util.Random;
-import java.util.ArrayList;
 import java.io.*;
-import javax.sound.sampled.*;
-
-public class App extends JPanel implements ActionListener, KeyListener {
-    private static class Tile {
-        int x;
-        int y;
-
-        Tile(int x, int y) { this.x = x; this.y = y; }
-    }
-
-    private enum FoodType {
-        NORMAL(Color.RED, 1),
-        BONUS(Color.YELLOW, 3),
-        SPEED_BOOST(Color.CYAN, 1),
-        SHRINK(Color.MAGENTA, -2),
-        GHOST(Color.WHITE, 1);
-
-        final Color color;
-        final int growthValue;
-
-        FoodType(Color color, int growthValue) {
-            this.color = color;
-            this.growthValue = growthValue;
-        }
-    }
-
-    private static class Food {
-        Point location;
-        FoodType type;
-
-        Food(int x, int y, FoodType type) {
-            this.location = new Point(x, y);
-            this.type = type;
-        }
-    }
-
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.channels.ServerSocketChannel;
+
+public class App extends JPanel implements GameLoop.Callbacks, KeyListener {
     private enum GameState {
         TITLE_SCREEN,
         PLAYING,
@@ -47,64 +20,135 @@ public class App extends JPanel implements ActionListener, KeyListener {
         GAME_OVER
     }
 
-    private enum Difficulty {
-        EASY, NORMAL, HARD
-    }
-
-    private final int BOARD_WIDTH = 35;
-    private final int BOARD_HEIGHT = 35;
-    private final int CELL_SIZE = 20;
-    private final int MIN_GAME_SPEED = 40;      // Maximum speed (minimum delay)
-    private final int BOOST_DURATION = 5000;    // 5 seconds for speed boost
-    private final int BOOST_SPEED = 30;         // Delay for speed boost
-    private final int GHOST_DURATION = 5000;    // 5 seconds for ghost mode
-    private static final String HIGH_SCORE_FILE = "highscore.txt";
-
-    private ArrayList<Tile> snake;
-    private char direction;
-    private Timer timer;
-    private int currentGameSpeed;
-    private int highScore = 0;
-    private Random random;
-    private Food currentFood;
-    private boolean isBoosted = false;
-    private Timer boostTimer;
-    private boolean isGhostMode = false;
-    private Timer ghostTimer;
-    private long boostStartTime;
-    private long ghostStartTime;
-    private long pauseStartTime;
-    private GameState gameState;
-    private Difficulty selectedDifficulty;
+    private final int BOARD_WIDTH;   // 35 x 35, or the size of the level being played
+    private final int BOARD_HEIGHT;
+    static final int CELL_SIZE = 20;
+    private final long AUTOPILOT_BUDGET_NANOS = 500_000;  // Well inside even a boosted tick
+    private static final String LEGACY_HIGH_SCORE_FILE = "highscore.txt";
+    private static final String LEADERBOARD_FILE = "leaderboard";
+    private static final String REPLAY_FILE = "replays.snkr";
+    private static final Path SAVE_FILE = Paths.get("savegame.snks");
+    // Food items on the board at once; more than one is a practice mode kept off the leaderboard
+    private static final int FOOD_COUNT = Math.max(1, Integer.getInteger("snake.food", 1));
+    static final Color WALL_COLOR = new Color(110, 110, 110);
+    // Obstacles from level -Dsnake.level of the pack named by -Dsnake.levels; also kept off the leaderboard
+    private LevelPack.Level level;
+    private LevelPack levelPack;
+
+    private SnakeEngine engine;
+    private GameLoop gameLoop;
+    private Autopilot autopilot;
+    private ReplayRecorder recorder;
+    private GameRandom random;  // The engine's generator, saved with it so food carries on where it left off
+    private volatile SaveGame savedGame;  // A suspended game found at startup, until it is resumed or replaced
+    private volatile boolean isAutopilotOn;
+    private final InputQueue input = new InputQueue();
+    // Input latency is printed after each game when run with -Dsnake.inputLatency
+    private static final boolean REPORT_INPUT_LATENCY = Boolean.getBoolean("snake.inputLatency");
+    private volatile Telemetry telemetry;  // Created with the first game; it hooks GC notifications and JFR
+    private SpectatorFeed spectators;  // Only when run with -Dsnake.spectatorPort
+    private volatile boolean isHudOn;
+    private long unpresentedInputTime;  // Arrival of the last applied press not yet shown on screen, or 0
+    private final Object frameLock = new Object();  // Guards the engine and board layer between the loop and the EDT
+    private volatile Leaderboard leaderboard;  // Null until the startup loader has read it
+    private Thread startupLoader;
+    // Prints the wall-clock time of the first title screen paint and exits, for startup benchmarks
+    private static final boolean EXIT_AFTER_FIRST_PAINT = Boolean.getBoolean("snake.exitAfterFirstPaint");
+    private boolean isFirstPaintDone;
+    // Fonts and colors are made once; painting a frame in game allocates nothing
+    private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Font CHECKBOX_FONT = new Font("Arial", Font.PLAIN, 14);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 50);
+    private static final Font HIGH_SCORE_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Font SCORE_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font HELP_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Font OVERLAY_FONT = new Font("Arial", Font.BOLD, 30);
+    private static final Font HUD_FONT = new Font("Monospaced", Font.PLAIN, 11);
+    private static final Color BUTTON_COLOR = new Color(80, 80, 80);
+    private static final Color HELP_COLOR = new Color(255, 255, 255, 100); // Semi-transparent white
+    private static final Color HUD_COLOR = new Color(255, 255, 255, 180);
+    private static final Color OVERLAY_COLOR = new Color(0, 0, 0, 150);    // Semi-transparent overlay
+    // In-game text, rendered on the first game frame rather than at startup
+    private SpriteAtlas.Text playingHelpText, pausedHelpText, autopilotText, gameOverText, pausedText, unrankedText;
+    private SpriteAtlas.Text scoreLabel, highScoreLabel;
+    private final SpriteAtlas.Text[] digits = new SpriteAtlas.Text[10];  // Scores are drawn a digit at a time
+    private volatile int highScore = 0;  // Best score for the mode being played
+    private volatile GameState gameState;
+    private SnakeEngine.Difficulty selectedDifficulty;
     private boolean isWrapAroundMode;
-    private int initialGameSpeed;
-    private int speedIncrement;
+    private BufferedImage boardLayer;  // Snake and food, redrawn only where cells change
+    private Graphics2D boardGraphics;  // Kept open for the life of boardLayer
+    private SpriteAtlas sprites;
 
     // UI Components
     private JButton easyButton, normalButton, hardButton;
+    private JButton resumeButton;
     private JCheckBox wrapAroundCheckBox;
     private JButton restartButton;  // Add this line
     private JButton mainMenuButton;
-    private Clip eatSound;
-    private Clip gameOverSound;
+    private Canvas gameCanvas;
+    private final SoundEngine sound = new SoundEngine();
+    private int eatSound = -1;
+    private int gameOverSound = -1;
 
     public App() {
+        this(null);
+    }
+
+    /**
+     * A panel that only shows the given engine's game, sized to its board, for
+     * tools that draw frames offscreen with drawFrame(). It loads no sounds or
+     * files and hooks nothing into the JVM.
+     */
+    static App offscreen(SnakeEngine engine) {
+        App app = new App(engine);
+        app.setSize(app.getPreferredSize());
+        app.showEngine(engine);
+        return app;
+    }
+
+    private App(SnakeEngine shownEngine) {
+        level = shownEngine == null ? loadLevel() : null;
+        BOARD_WIDTH = shownEngine != null ? shownEngine.getBoardWidth() : level != null ? level.getWidth() : 35;
+        BOARD_HEIGHT = shownEngine != null ? shownEngine.getBoardHeight() : level != null ? level.getHeight() : 35;
         setPreferredSize(new Dimension(BOARD_WIDTH * CELL_SIZE, BOARD_HEIGHT * CELL_SIZE));
         setBackground(Color.BLACK);
         setFocusable(true);
         addKeyListener(this);
         
         initUI();
-
-        // Load sounds - requires eat.wav and gameover.wav in the src folder
-        //eatSound = loadSound("/eat.wav");
-        //gameOverSound = loadSound("/gameover.wav");
-
-        loadHighScore();
         gameState = GameState.TITLE_SCREEN;
-        snake = new ArrayList<>();
+        if (shownEngine != null) return;
+
+        // Sounds and the leaderboard load off the EDT so the title screen paints first
+        startupLoader = new Thread(() -> {
+            // Load sounds - requires eat.wav and gameover.wav in the src folder
+            eatSound = sound.load("/eat.wav");
+            gameOverSound = sound.load("/gameover.wav");
+            if (eatSound >= 0 || gameOverSound >= 0) {
+                sound.start();
+            }
+            loadLeaderboard();
+            loadSavedGame();
+            repaint(); // Shows the high score
+        }, "Startup Loader");
+        startupLoader.start();
+
+        dumpTelemetryOnExit();
+        saveGameOnExit();
+        startSpectatorFeed();
+    }
+
+    /** Waits for the startup loader, which has almost always finished before anyone can click. */
+    private void awaitStartup() {
+        try {
+            startupLoader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
+    /** Only the title screen is built up front; the game's own components wait for the first game. */
     private void initUI() {
         setLayout(null);
 
@@ -112,29 +156,41 @@ public class App extends JPanel implements ActionListener, KeyListener {
         easyButton = new JButton("Easy");
         styleButton(easyButton);
         easyButton.setBounds((BOARD_WIDTH * CELL_SIZE - 120) / 2, 180, 120, 40);
-        easyButton.addActionListener(e -> startGame(Difficulty.EASY));
+        easyButton.addActionListener(e -> startGame(SnakeEngine.Difficulty.EASY));
         add(easyButton);
 
         normalButton = new JButton("Normal");
         styleButton(normalButton);
         normalButton.setBounds((BOARD_WIDTH * CELL_SIZE - 120) / 2, 230, 120, 40);
-        normalButton.addActionListener(e -> startGame(Difficulty.NORMAL));
+        normalButton.addActionListener(e -> startGame(SnakeEngine.Difficulty.NORMAL));
         add(normalButton);
 
         hardButton = new JButton("Hard");
         styleButton(hardButton);
         hardButton.setBounds((BOARD_WIDTH * CELL_SIZE - 120) / 2, 280, 120, 40);
-        hardButton.addActionListener(e -> startGame(Difficulty.HARD));
+        hardButton.addActionListener(e -> startGame(SnakeEngine.Difficulty.HARD));
         add(hardButton);
 
+        // Shown once the startup loader finds a suspended game
+        resumeButton = new JButton("Resume");
+        styleButton(resumeButton);
+        resumeButton.setBounds((BOARD_WIDTH * CELL_SIZE - 120) / 2, 380, 120, 40);
+        resumeButton.addActionListener(e -> resumeGame());
+        resumeButton.setVisible(false);
+        add(resumeButton);
+
         // Wrap-around mode checkbox
         wrapAroundCheckBox = new JCheckBox("Wrap Around Walls");
         wrapAroundCheckBox.setBounds((BOARD_WIDTH * CELL_SIZE - 150) / 2, 330, 150, 30);
         wrapAroundCheckBox.setBackground(getBackground());
         wrapAroundCheckBox.setForeground(Color.WHITE);
-        wrapAroundCheckBox.setFont(new Font("Arial", Font.PLAIN, 14));
+        wrapAroundCheckBox.setFont(CHECKBOX_FONT);
         wrapAroundCheckBox.setFocusPainted(false);
         add(wrapAroundCheckBox);
+    }
+
+    private void initGameUI() {
+        if (gameCanvas != null) return;
 
         // Add restart button
         restartButton = new JButton("Restart");
@@ -155,36 +211,69 @@ public class App extends JPanel implements ActionListener, KeyListener {
         mainMenuButton.addActionListener(e -> showTitleScreen());
         mainMenuButton.setVisible(false);
         add(mainMenuButton);
+
+        // Game board, page-flipped by the game loop while a game is running
+        gameCanvas = new Canvas();
+        gameCanvas.setBounds(0, 0, BOARD_WIDTH * CELL_SIZE, BOARD_HEIGHT * CELL_SIZE);
+        gameCanvas.setBackground(Color.BLACK);
+        gameCanvas.setIgnoreRepaint(true);
+        gameCanvas.setFocusable(true);
+        gameCanvas.addKeyListener(this);
+        gameCanvas.setVisible(false);
+        add(gameCanvas);
     }
 
-    private void startGame(Difficulty difficulty) {
+    private void startGame(SnakeEngine.Difficulty difficulty) {
         this.selectedDifficulty = difficulty;
         this.isWrapAroundMode = wrapAroundCheckBox.isSelected();
-        switch (difficulty) {
-            case EASY:
-                initialGameSpeed = 150;
-                speedIncrement = 3;
-                break;
-            case NORMAL:
-                initialGameSpeed = 100;
-                speedIncrement = 5;
-                break;
-            case HARD:
-                initialGameSpeed = 70;
-                speedIncrement = 7;
-                break;
-        }
-        
+        initGameUI();
+        awaitStartup();
+        discardSavedGame(); // There is one save slot, and a new game takes it over
+        hideMenus();
+
+        gameState = GameState.PLAYING;
+        initGame();
+    }
+
+    /** Picks up the suspended game exactly where it stopped, paused so the player can get ready. */
+    private void resumeGame() {
+        initGameUI();
+        awaitStartup();
+        SaveGame save = savedGame;
+        if (save == null) return;
+        discardSavedGame(); // Saved again on exit or from the pause screen
+        this.selectedDifficulty = save.difficulty;
+        this.isWrapAroundMode = save.engine.isWrapAroundMode();
+        hideMenus();
+
+        gameState = GameState.PAUSED;
+        // The loop presents the paused frame itself; drawing it here too would race it for the buffer strategy
+        startSession(save.engine, save.recorder, save.random, true);
+    }
+
+    private void hideMenus() {
         easyButton.setVisible(false);
         normalButton.setVisible(false);
         hardButton.setVisible(false);
+        resumeButton.setVisible(false);
         wrapAroundCheckBox.setVisible(false);
         restartButton.setVisible(false);
         mainMenuButton.setVisible(false);
+    }
+
+    /**
+     * Shows an engine's game without driving it, so tools can step the engine
+     * themselves and paint the panel offscreen.
+     */
+    void showEngine(SnakeEngine engine) {
+        initGameUI();
+        hideMenus();
 
+        synchronized (frameLock) {
+            this.engine = engine;
+            boardLayer = null;
+        }
         gameState = GameState.PLAYING;
-        initGame();
-        requestFocusInWindow();
     }
 
     private void showTitleScreen() {
@@ -196,6 +285,7 @@ public class App extends JPanel implements ActionListener, KeyListener {
         easyButton.setVisible(true);
         normalButton.setVisible(true);
         hardButton.setVisible(true);
+        resumeButton.setVisible(savedGame != null);
         wrapAroundCheckBox.setVisible(true);
 
         repaint();
@@ -203,250 +293,279 @@ public class App extends JPanel implements ActionListener, KeyListener {
     }
 
     private void initGame() {
-        if (boostTimer != null && boostTimer.isRunning()) {
-            boostTimer.stop();
-        }
-        if (ghostTimer != null && ghostTimer.isRunning()) {
-            ghostTimer.stop();
+        // Seed explicitly so the game can be replayed from its recording
+        long seed = new Random().nextLong();
+        GameRandom gameRandom = new GameRandom(seed);
+        SnakeEngine newEngine = level != null
+                ? new SnakeEngine(level, isWrapAroundMode, selectedDifficulty, FOOD_COUNT, gameRandom)
+                : new SnakeEngine(BOARD_WIDTH, BOARD_HEIGHT, isWrapAroundMode, selectedDifficulty, FOOD_COUNT, gameRandom);
+        startSession(newEngine,
+                new ReplayRecorder(selectedDifficulty, isWrapAroundMode, BOARD_WIDTH, BOARD_HEIGHT, FOOD_COUNT, level, seed),
+                gameRandom, false);
+    }
+
+    /** Hands a new or resumed game to a fresh game loop. */
+    private void startSession(SnakeEngine newEngine, ReplayRecorder newRecorder, GameRandom newRandom, boolean paused) {
+        if (gameLoop != null) {
+            gameLoop.stop();
+        }
+        synchronized (frameLock) {
+            engine = newEngine;
+            recorder = newRecorder;
+            random = newRandom;
+            boardLayer = null;
+            highScore = leaderboard.best(selectedDifficulty, isWrapAroundMode);
+            // The old loop has stopped, so it's safe to take over the consumer side here
+            input.clear();
+            unpresentedInputTime = 0;
+            if (spectators != null) {
+                spectators.restart(); // New engine, so spectators need a fresh keyframe
+            }
+            if (autopilot == null) {
+                autopilot = new Autopilot(BOARD_WIDTH, BOARD_HEIGHT, AUTOPILOT_BUDGET_NANOS);
+            }
+            if (telemetry == null) {
+                telemetry = new Telemetry();
+            }
         }
-        isBoosted = false;
-        isGhostMode = false;
+        showGameCanvas();
 
-        snake.clear();
-        snake.add(new Tile(BOARD_WIDTH/2, BOARD_HEIGHT/2));
-        direction = 'R';
-        random = new Random();
-        spawnFood();
-        currentGameSpeed = initialGameSpeed;
-        
-        timer = new Timer(currentGameSpeed, this);
-        timer.start();
+        gameLoop = new GameLoop(this, telemetry);
+        gameLoop.start(engine.tickDelay(), paused);
+    }
+
+    private void showGameCanvas() {
+        gameCanvas.setVisible(true);
+        if (gameCanvas.isDisplayable() && gameCanvas.getBufferStrategy() == null) {
+            gameCanvas.createBufferStrategy(2);
+        }
+        gameCanvas.requestFocusInWindow();
     }
 
-    private void loadHighScore() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(HIGH_SCORE_FILE))) {
+    private void loadLeaderboard() {
+        leaderboard = Leaderboard.open(LEADERBOARD_FILE, Paths.get(REPLAY_FILE));
+        if (leaderboard.best() > 0) return;
+
+        // First run since the single high score file; carry it over as a Normal, walls-on score
+        try (BufferedReader reader = new BufferedReader(new FileReader(LEGACY_HIGH_SCORE_FILE))) {
             String line = reader.readLine();
             if (line != null) {
-                highScore = Integer.parseInt(line.trim());
+                int legacyScore = Integer.parseInt(line.trim());
+                if (legacyScore > 0) {
+                    leaderboard.submit(SnakeEngine.Difficulty.NORMAL, false, legacyScore, null);
+                }
             }
         } catch (IOException | NumberFormatException e) {
-            // File doesn't exist or is invalid, default high score to 0.
-            highScore = 0;
-        }
-    }
-
-    private void saveHighScore() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(HIGH_SCORE_FILE))) {
-            writer.write(String.valueOf(highScore));
-        } catch (IOException e) {
-            e.printStackTrace(); // Log error if saving fails.
+            // File doesn't exist or is invalid, nothing to carry over.
         }
     }
 
-    /*private Clip loadSound(String filePath) {
+    /** The level named on the command line, mapped from its pack, or null to play on an open board. */
+    private LevelPack.Level loadLevel() {
+        String packFile = System.getProperty("snake.levels");
+        if (packFile == null) return null;
         try {
-            // The leading "/" is important for getResource to find the file at the root of the classpath
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(getClass().getResource(filePath));
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioInputStream);
-            return clip;
-        } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | NullPointerException e) {
-            System.err.println("Warning: Could not load sound file: " + filePath);
-            // e.printStackTrace(); // Uncomment for detailed error diagnosis
+            levelPack = LevelPack.open(Paths.get(packFile));
+            return levelPack.level(Math.floorMod(Integer.getInteger("snake.level", 0), levelPack.size()));
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace(); // Play on an open board instead.
             return null;
         }
-    }*/
+    }
 
-    private void playSound(Clip clip) {
-        if (clip != null) {
-            if (clip.isRunning()) {
-                clip.stop();
+    private void loadSavedGame() {
+        try {
+            SaveGame save = SaveGame.read(SAVE_FILE, levelPack);
+            // A save from another board size can't be shown on this one; leave it for a later launch
+            if (save != null && save.engine.getBoardWidth() == BOARD_WIDTH
+                    && save.engine.getBoardHeight() == BOARD_HEIGHT) {
+                savedGame = save;
             }
-            clip.setFramePosition(0); // Rewind to the beginning
-            clip.start();
+        } catch (IOException e) {
+            e.printStackTrace(); // Start without it; the next save replaces the file.
+        }
+        if (savedGame != null) {
+            SwingUtilities.invokeLater(() -> resumeButton.setVisible(gameState == GameState.TITLE_SCREEN));
         }
     }
 
-    private void spawnFood() {
-        int x, y;
-        FoodType type;
-
-        do {
-            x = random.nextInt(BOARD_WIDTH);
-            y = random.nextInt(BOARD_HEIGHT);
-        } while (isSnakeAt(x, y));
-
-        double chance = random.nextDouble();
-        if (snake.size() > 10 && !isWrapAroundMode && chance < 0.10) { // 10% for ghost food (only in no-wrap mode)
-            type = FoodType.GHOST;
-        } else if (snake.size() > 15 && chance < 0.20) { // 10% chance for shrink food
-            type = FoodType.SHRINK;
-        } else if (snake.size() > 5 && chance < 0.30) { // 10% chance for bonus food
-            type = FoodType.BONUS;
-        } else if (snake.size() > 10 && chance < 0.40) { // 10% chance for speed boost
-            type = FoodType.SPEED_BOOST;
-        } else {
-            type = FoodType.NORMAL;
+    /** Encodes the running game under the frame lock; the caller writes it out wherever suits. */
+    private ByteBuffer encodeGame() {
+        synchronized (frameLock) {
+            return SaveGame.encode(selectedDifficulty, engine, random, recorder);
         }
+    }
 
-        currentFood = new Food(x, y, type);
+    /**
+     * Saves the game from the pause screen on the leaderboard's writer thread,
+     * so the EDT never waits on disk and saves and deletes happen in order.
+     */
+    private void checkpointGame() {
+        ByteBuffer encoded = encodeGame();
+        leaderboard.execute(() -> {
+            try {
+                SaveGame.write(SAVE_FILE, encoded);
+            } catch (IOException e) {
+                e.printStackTrace(); // Log error if saving fails.
+            }
+        });
     }
 
-    private void handleFoodEaten() {
-        FoodType eatenFoodType = currentFood.type;
+    /** Suspends a game still in progress when the window closes, to be resumed from the title screen. */
+    private void saveGameOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            GameState state = gameState;
+            // Engines shown by tools through showEngine() have no loop or recording to save
+            if (gameLoop == null || (state != GameState.PLAYING && state != GameState.PAUSED)) return;
+            leaderboard.close(); // Lets a queued delete of an older save finish before this one is written
+            try {
+                SaveGame.write(SAVE_FILE, encodeGame());
+            } catch (IOException e) {
+                e.printStackTrace(); // Log error if saving fails.
+            }
+        }, "Save On Exit"));
+    }
 
-        // 1. Handle snake growth
-        // The snake automatically grows by 1 because we don't remove the tail.
-        // For bonus growth, add extra segments to the tail.
-        if (eatenFoodType.growthValue > 1) {
-            Tile tail = snake.get(snake.size() - 1);
-            for (int i = 0; i < eatenFoodType.growthValue - 1; i++) {
-                snake.add(new Tile(tail.x, tail.y));
+    /** Forgets the save; the file is deleted on the leaderboard's writer thread, after any queued checkpoint. */
+    private void discardSavedGame() {
+        savedGame = null;
+        leaderboard.execute(() -> {
+            try {
+                Files.deleteIfExists(SAVE_FILE);
+            } catch (IOException e) {
+                e.printStackTrace(); // A stale save only offers an old game to resume.
             }
-        } else if (eatenFoodType.growthValue < 0) {
-            // Shrink the snake
-            int shrinkAmount = Math.abs(eatenFoodType.growthValue);
-            // We also need to counteract the implicit growth of 1 from not removing the tail.
-            int totalToRemove = shrinkAmount + 1;
-            for (int i = 0; i < totalToRemove && snake.size() > 3; i++) {
-                snake.remove(snake.size() - 1);
+        });
+    }
+
+    /** Writes the session's timing percentiles to the file named by -Dsnake.telemetryCsv when the JVM exits. */
+    private void dumpTelemetryOnExit() {
+        String csvFile = System.getProperty("snake.telemetryCsv");
+        if (csvFile == null) return;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (telemetry == null) return; // No game was played
+            try (Writer writer = new BufferedWriter(new FileWriter(csvFile))) {
+                telemetry.writeCsv(writer);
+            } catch (IOException e) {
+                e.printStackTrace(); // Log error if saving fails.
             }
-        }
+        }, "Telemetry Dump"));
+    }
 
-        // 2. Handle speed boost
-        if (eatenFoodType == FoodType.SPEED_BOOST && !isBoosted) {
-            isBoosted = true;
-            boostStartTime = System.currentTimeMillis();
-            timer.setDelay(BOOST_SPEED);
-            boostTimer = new Timer(BOOST_DURATION, e -> {
-                timer.setDelay(currentGameSpeed); // Revert to normal game speed
-                isBoosted = false;
-            });
-            boostTimer.setRepeats(false);
-            boostTimer.start();
+    /** Accepts spectator connections on the port named by -Dsnake.spectatorPort, if any. */
+    private void startSpectatorFeed() {
+        Integer port = Integer.getInteger("snake.spectatorPort");
+        if (port == null) return;
+        try {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port));
+            spectators = new SpectatorFeed();
+            Thread acceptor = new Thread(() -> {
+                while (server.isOpen()) {
+                    try {
+                        spectators.subscribe(server.accept());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }, "Spectator Accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        } catch (IOException e) {
+            e.printStackTrace(); // Play on without spectators
         }
+    }
 
-        // 3. Handle Ghost Mode
-        if (eatenFoodType == FoodType.GHOST && !isGhostMode) {
-            isGhostMode = true;
-            ghostStartTime = System.currentTimeMillis();
-            ghostTimer = new Timer(GHOST_DURATION, e -> {
-                isGhostMode = false;
-            });
-            ghostTimer.setRepeats(false);
-            ghostTimer.start();
-        }
+    private void playSound(int effect) {
+        sound.play(effect); // Mixed on the sound thread; this only queues it
     }
 
     private void togglePause() {
         if (gameState == GameState.PLAYING) {
+            // Power-ups run on game time, so stopping the tick freezes them too
             gameState = GameState.PAUSED;
-            pauseStartTime = System.currentTimeMillis();
-            timer.stop();
-            if (boostTimer != null && boostTimer.isRunning()) {
-                boostTimer.stop();
-            }
-            if (ghostTimer != null && ghostTimer.isRunning()) {
-                ghostTimer.stop();
-            }
+            gameLoop.setPaused(true);
         } else if (gameState == GameState.PAUSED) {
-            long pauseDuration = System.currentTimeMillis() - pauseStartTime;
-            if (isBoosted) {
-                boostStartTime += pauseDuration;
-            }
-            if (isGhostMode) {
-                ghostStartTime += pauseDuration;
-            }
             gameState = GameState.PLAYING;
-            timer.start();
-            if (boostTimer != null && isBoosted) {
-                boostTimer.start();
-            }
-            if (ghostTimer != null && isGhostMode) {
-                ghostTimer.start();
-            }
-            requestFocusInWindow();
+            gameLoop.setPaused(false);
+            gameCanvas.requestFocusInWindow();
         }
         repaint();
     }
 
+    /**
+     * Only single-food games on the open board go on the leaderboard: their
+     * scores are the only ones comparable with each other. The rest are still
+     * archived as replays, and the game-over screen says they weren't ranked.
+     */
+    private boolean isRanked() {
+        return FOOD_COUNT == 1 && engine.getLevel() == null;
+    }
+
+    /** Called on the game loop thread; the Swing side is handed back to the EDT. */
     private void endGame() {
         gameState = GameState.GAME_OVER;
-        timer.stop();
+        gameLoop.stop();
         playSound(gameOverSound);
-        int currentScore = snake.size() - 1;
-        if (currentScore > highScore) {
-            highScore = currentScore;
-            saveHighScore();
-        }
-        restartButton.setVisible(true);
-        mainMenuButton.setVisible(true);
+        int currentScore = engine.score();
+        if (REPORT_INPUT_LATENCY) {
+            System.out.println("Input to tick:  " + telemetry.inputToTick.summary());
+            System.out.println("Input to frame: " + telemetry.inputToFrame.summary());
+        }
+        recorder.finish(currentScore);
+        byte[] replay = recorder.toByteArray();
+        discardSavedGame(); // A checkpoint of this game would resume a game already over
+        // Queued with the replay for the leaderboard's writer thread, so neither this thread nor the EDT waits on disk
+        if (isRanked()) {
+            leaderboard.submit(selectedDifficulty, isWrapAroundMode, currentScore, replay);
+        } else {
+            leaderboard.archive(replay);
+        }
+        highScore = leaderboard.best(selectedDifficulty, isWrapAroundMode);
+        SwingUtilities.invokeLater(() -> {
+            gameCanvas.setVisible(false);
+            restartButton.setVisible(true);
+            mainMenuButton.setVisible(true);
+            repaint();
+        });
     }
 
     private void move() {
         if (gameState != GameState.PLAYING) return;
 
-        Tile head = snake.get(0);
-        Tile newHead = new Tile(head.x, head.y);
-
-        switch (direction) {
-            case 'U': newHead.y--; break;
-            case 'D': newHead.y++; break;
-            case 'L': newHead.x--; break;
-            case 'R': newHead.x++; break;
-        }
-
-        // Handle wrap-around mode
-        if (isWrapAroundMode) {
-            if (newHead.x < 0) newHead.x = BOARD_WIDTH - 1;
-            else if (newHead.x >= BOARD_WIDTH) newHead.x = 0;
-            if (newHead.y < 0) newHead.y = BOARD_HEIGHT - 1;
-            else if (newHead.y >= BOARD_HEIGHT) newHead.y = 0;
-        }
-
-        // Check for game over conditions
-        // 1. Collision with self
-        if (isSnakeAt(newHead.x, newHead.y)) {
-            endGame();
-            return;
-        }
-
-        // 2. Collision with walls (only if not in wrap-around mode)
-        if (!isWrapAroundMode && !isGhostMode && (newHead.x < 0 || newHead.x >= BOARD_WIDTH || newHead.y < 0 || newHead.y >= BOARD_HEIGHT)) {
-            endGame();
-            return;
-        }
-
-        snake.add(0, newHead);
-
-        // Check if food is eaten
-        if (newHead.x == currentFood.location.x && newHead.y == currentFood.location.y) {
-            playSound(eatSound);
-            handleFoodEaten();
-            spawnFood();
-            // Increase permanent speed only if not boosted
-            if (!isBoosted && currentGameSpeed > MIN_GAME_SPEED && speedIncrement > 0) {
-                currentGameSpeed -= speedIncrement;
-                timer.setDelay(currentGameSpeed);
-            }
-        } else {
-            snake.remove(snake.size() - 1);
+        recorder.recordTick(engine.getDirection());
+        switch (engine.step()) {
+            case DIED:
+                endGame();
+                return;
+            case ATE:
+                playSound(eatSound);
+                int item = engine.getLastFoodItem();
+                if (engine.getFoodType(item) != null) {
+                    telemetry.foodSpawned(engine.getFoodType(item), engine.getFoodX(item), engine.getFoodY(item),
+                            engine.length());
+                }
+                break;
+            default:
+                break;
         }
     }
 
-    private boolean isSnakeAt(int x, int y) {
-        for (Tile tile : snake) {
-            if (tile.x == x && tile.y == y) {
-                return true;
-            }
+    static Color foodColor(SnakeEngine.FoodType type) {
+        switch (type) {
+            case BONUS: return Color.YELLOW;
+            case SPEED_BOOST: return Color.CYAN;
+            case SHRINK: return Color.MAGENTA;
+            case GHOST: return Color.WHITE;
+            default: return Color.RED;
         }
-        return false;
     }
 
     private void styleButton(JButton button) {
-        button.setFont(new Font("Arial", Font.BOLD, 14));
+        button.setFont(BUTTON_FONT);
         button.setForeground(Color.WHITE);
-        button.setBackground(new Color(80, 80, 80));
+        button.setBackground(BUTTON_COLOR);
         button.setFocusPainted(false);
         button.setBorder(BorderFactory.createEtchedBorder());
     }
@@ -462,61 +581,86 @@ public class App extends JPanel implements ActionListener, KeyListener {
         if (gameState == GameState.TITLE_SCREEN) {
             // Draw Title
             g2d.setColor(Color.WHITE);
-            g2d.setFont(new Font("Arial", Font.BOLD, 50));
-            FontMetrics titleMetrics = getFontMetrics(g2d.getFont());
+            g2d.setFont(TITLE_FONT);
+            FontMetrics titleMetrics = getFontMetrics(TITLE_FONT);
             g2d.drawString("Snake", (getWidth() - titleMetrics.stringWidth("Snake")) / 2, 80);
 
             // Show high score on title screen
             g.setColor(Color.WHITE);
-            g.setFont(new Font("Arial", Font.BOLD, 20));
-            FontMetrics metrics = getFontMetrics(g.getFont());
-            String highScoreMsg = "High Score: " + highScore;
-            g.drawString(highScoreMsg,
-                    (BOARD_WIDTH * CELL_SIZE - metrics.stringWidth(highScoreMsg)) / 2,
-                    130);
+            g.setFont(HIGH_SCORE_FONT);
+            FontMetrics metrics = getFontMetrics(HIGH_SCORE_FONT);
+            if (leaderboard != null) {
+                String highScoreMsg = "High Score: " + leaderboard.best();
+                g.drawString(highScoreMsg,
+                        (BOARD_WIDTH * CELL_SIZE - metrics.stringWidth(highScoreMsg)) / 2,
+                        130);
+            }
+            if (EXIT_AFTER_FIRST_PAINT && !isFirstPaintDone) {
+                isFirstPaintDone = true;
+                System.out.println("first-paint " + System.currentTimeMillis());
+                SwingUtilities.invokeLater(() -> System.exit(0));
+            }
             return;
         }
         
         // --- Draw Game Elements (if not on title screen) ---
+        synchronized (frameLock) {
+            drawGame(g2d);
+        }
+    }
 
-        // Draw Score and High Score
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 16));
-        FontMetrics metrics = getFontMetrics(g2d.getFont());
-        String scoreText = "Score: " + (snake.size() - 1);
-        g2d.drawString(scoreText, 10, 20);
-        String highScoreText = "High Score: " + highScore;
-        g2d.drawString(highScoreText, BOARD_WIDTH * CELL_SIZE - metrics.stringWidth(highScoreText) - 10, 20);
-
-        // Draw snake head
-        Color headColor = new Color(0, 220, 0); // Brighter green for head
-        Color bodyColor = Color.GREEN;
-
-        if (isGhostMode) {
-            headColor = new Color(0, 220, 0, 150); // Semi-transparent
-            bodyColor = new Color(0, 255, 0, 150); // Semi-transparent
+    /**
+     * Draws one whole frame of the game, background included, into any
+     * graphics. The game loop uses it for the page-flipped canvas; tools use
+     * it to paint offscreen.
+     */
+    void drawFrame(Graphics2D g2d) {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        synchronized (frameLock) {
+            drawGame(g2d);
         }
+    }
 
-        Tile head = snake.get(0);
-        g2d.setColor(headColor);
-        g2d.fillRoundRect(head.x * CELL_SIZE, head.y * CELL_SIZE, CELL_SIZE, CELL_SIZE, 8, 8);
-        
-        // Draw snake
-        g2d.setColor(bodyColor);
-        for (int i = 1; i < snake.size(); i++) {
-            Tile p = snake.get(i);
-            g2d.fillRoundRect(p.x * CELL_SIZE, p.y * CELL_SIZE, CELL_SIZE, CELL_SIZE, 8, 8);
+    private void drawGame(Graphics2D g2d) {
+        updateBoardLayer();
+        g2d.drawImage(boardLayer, 0, 0, null);
+        if (playingHelpText == null) {
+            FontMetrics helpMetrics = getFontMetrics(HELP_FONT);
+            FontMetrics overlayMetrics = getFontMetrics(OVERLAY_FONT);
+            playingHelpText = new SpriteAtlas.Text("Press 'P' to Pause", HELP_FONT, HELP_COLOR, helpMetrics);
+            pausedHelpText = new SpriteAtlas.Text("Press 'P' to Resume, 'S' to Save", HELP_FONT, HELP_COLOR, helpMetrics);
+            autopilotText = new SpriteAtlas.Text("Autopilot", HELP_FONT, HELP_COLOR, helpMetrics);
+            gameOverText = new SpriteAtlas.Text("Game Over!", OVERLAY_FONT, Color.WHITE, overlayMetrics);
+            pausedText = new SpriteAtlas.Text("Paused", OVERLAY_FONT, Color.WHITE, overlayMetrics);
+            unrankedText = new SpriteAtlas.Text("Practice game: not ranked", HELP_FONT, Color.WHITE, helpMetrics);
+            FontMetrics scoreMetrics = getFontMetrics(SCORE_FONT);
+            scoreLabel = new SpriteAtlas.Text("Score: ", SCORE_FONT, Color.WHITE, scoreMetrics);
+            highScoreLabel = new SpriteAtlas.Text("High Score: ", SCORE_FONT, Color.WHITE, scoreMetrics);
+            for (int digit = 0; digit < 10; digit++) {
+                digits[digit] = new SpriteAtlas.Text(Integer.toString(digit), SCORE_FONT, Color.WHITE, scoreMetrics);
+            }
         }
 
-        // Draw food
-        g2d.setColor(currentFood.type.color);
-        g2d.fillRoundRect(currentFood.location.x * CELL_SIZE, currentFood.location.y * CELL_SIZE, CELL_SIZE, CELL_SIZE, 12, 12);
+        // Draw Score and High Score
+        scoreLabel.draw(g2d, 10, 20);
+        drawNumber(g2d, engine.score(), 10 + scoreLabel.width, 20);
+        int highScoreX = BOARD_WIDTH * CELL_SIZE - numberWidth(highScore) - 10;
+        highScoreLabel.draw(g2d, highScoreX - highScoreLabel.width, 20);
+        drawNumber(g2d, highScore, highScoreX, 20);
+
+        if (isHudOn) {
+            drawTelemetryHud(g2d);
+        }
 
         // Draw help text for pause
         if (gameState == GameState.PLAYING || gameState == GameState.PAUSED) {
-            g2d.setFont(new Font("Arial", Font.BOLD, 12));
-            g2d.setColor(new Color(255, 255, 255, 100)); // Semi-transparent white
-            g2d.drawString("Press 'P' to Pause", 10, getHeight() - 10);
+            (gameState == GameState.PAUSED ? pausedHelpText : playingHelpText).draw(g2d, 10, getHeight() - 10);
+            if (isAutopilotOn) {
+                autopilotText.draw(g2d, getWidth() - autopilotText.width - 10, getHeight() - 10);
+            }
         }
 
         // Draw power-up timers
@@ -524,13 +668,117 @@ public class App extends JPanel implements ActionListener, KeyListener {
 
         // Draw game over message
         if (gameState == GameState.GAME_OVER) {
-            drawOverlay(g2d, "Game Over!");
+            drawOverlay(g2d, gameOverText);
+            if (!isRanked()) {
+                unrankedText.draw(g2d, (getWidth() - unrankedText.width) / 2, getHeight() / 2 + 30);
+            }
         }
 
         // Draw paused message
         if (gameState == GameState.PAUSED) {
-            drawOverlay(g2d, "Paused");
+            drawOverlay(g2d, pausedText);
+        }
+    }
+
+    private int numberWidth(int value) {
+        int width = 0;
+        do {
+            width += digits[value % 10].width;
+            value /= 10;
+        } while (value > 0);
+        return width;
+    }
+
+    /** Draws a non-negative number from pre-rendered digits, so a changing score allocates nothing either. */
+    private void drawNumber(Graphics2D g2d, int value, int x, int baseline) {
+        int right = x + numberWidth(value);
+        do {
+            SpriteAtlas.Text digit = digits[value % 10];
+            right -= digit.width;
+            digit.draw(g2d, right, baseline);
+            value /= 10;
+        } while (value > 0);
+    }
+
+    /** Brings the cached board image up to date with the cells the engine reports as changed. */
+    private void updateBoardLayer() {
+        if (boardLayer == null) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            int width = BOARD_WIDTH * CELL_SIZE;
+            int height = BOARD_HEIGHT * CELL_SIZE;
+            boardLayer = (gc != null)
+                    ? gc.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            if (boardGraphics != null) {
+                boardGraphics.dispose();
+            }
+            boardGraphics = boardLayer.createGraphics();
+            if (sprites == null) {
+                sprites = new SpriteAtlas(CELL_SIZE, gc);
+            }
+            redrawBoardLayer();
+        } else if (engine.hasAllChanged()) {
+            redrawBoardLayer();
+        } else {
+            for (int i = 0; i < engine.getChangedCount(); i++) {
+                int cell = engine.getChangedCell(i);
+                drawCell(boardGraphics, cell % BOARD_WIDTH, cell / BOARD_WIDTH);
+            }
         }
+        engine.clearChanges();
+    }
+
+    private void redrawBoardLayer() {
+        Graphics2D g2d = boardGraphics;
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, boardLayer.getWidth(), boardLayer.getHeight());
+
+        // Draw walls
+        if (engine.getLevel() != null) {
+            g2d.setColor(WALL_COLOR);
+            for (int y = 0; y < BOARD_HEIGHT; y++) {
+                for (int x = 0; x < BOARD_WIDTH; x++) {
+                    if (engine.isWall(x, y)) g2d.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+                }
+            }
+        }
+
+        // Draw snake, one blit per segment
+        int bodyTile = bodyTile();
+        for (int i = 1; i < engine.length(); i++) {
+            sprites.draw(g2d, bodyTile, engine.segmentX(i) * CELL_SIZE, engine.segmentY(i) * CELL_SIZE);
+        }
+
+        // Draw snake head
+        sprites.draw(g2d, headTile(), engine.segmentX(0) * CELL_SIZE, engine.segmentY(0) * CELL_SIZE);
+
+        // Draw food
+        for (int i = 0; i < engine.getFoodCount(); i++) {
+            if (engine.getFoodType(i) == null) continue;
+            sprites.draw(g2d, SpriteAtlas.foodTile(engine.getFoodType(i)),
+                    engine.getFoodX(i) * CELL_SIZE, engine.getFoodY(i) * CELL_SIZE);
+        }
+    }
+
+    private void drawCell(Graphics2D g2d, int x, int y) {
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+
+        SnakeEngine.FoodType food = engine.getFoodTypeAt(x, y);
+        if (food != null) {
+            sprites.draw(g2d, SpriteAtlas.foodTile(food), x * CELL_SIZE, y * CELL_SIZE);
+        } else if (engine.isSnakeAt(x, y)) {
+            boolean isHead = x == engine.segmentX(0) && y == engine.segmentY(0);
+            sprites.draw(g2d, isHead ? headTile() : bodyTile(), x * CELL_SIZE, y * CELL_SIZE);
+        }
+    }
+
+    private int headTile() {
+        return engine.isGhostMode() ? SpriteAtlas.GHOST_HEAD : SpriteAtlas.HEAD;
+    }
+
+    private int bodyTile() {
+        return engine.isGhostMode() ? SpriteAtlas.GHOST_BODY : SpriteAtlas.BODY;
     }
 
     private void drawPowerUpTimers(Graphics2D g2d) {
@@ -540,54 +788,107 @@ public class App extends JPanel implements ActionListener, KeyListener {
         final int BAR_HEIGHT = 10;
         final int BAR_MAX_WIDTH = 150;
         final int BAR_X = (getWidth() - BAR_MAX_WIDTH) / 2;
-        long now = (gameState == GameState.PAUSED) ? pauseStartTime : System.currentTimeMillis();
-
-        if (isBoosted) {
-            long elapsed = now - boostStartTime;
-            if (elapsed < BOOST_DURATION) {
-                double remainingRatio = 1.0 - (double)elapsed / BOOST_DURATION;
-                int barWidth = (int)(BAR_MAX_WIDTH * remainingRatio);
-
-                g2d.setColor(Color.DARK_GRAY);
-                g2d.fillRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
-                g2d.setColor(FoodType.SPEED_BOOST.color);
-                g2d.fillRect(BAR_X, barY, barWidth, BAR_HEIGHT);
-                g2d.setColor(Color.WHITE);
-                g2d.drawRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
-                
-                barY -= (BAR_HEIGHT + 5); // Move next bar up
-            }
+
+        if (engine.isBoosted()) {
+            double remainingRatio = (double)engine.getBoostRemaining() / engine.getBoostDuration();
+            int barWidth = (int)(BAR_MAX_WIDTH * remainingRatio);
+
+            g2d.setColor(Color.DARK_GRAY);
+            g2d.fillRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
+            g2d.setColor(foodColor(SnakeEngine.FoodType.SPEED_BOOST));
+            g2d.fillRect(BAR_X, barY, barWidth, BAR_HEIGHT);
+            g2d.setColor(Color.WHITE);
+            g2d.drawRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
+
+            barY -= (BAR_HEIGHT + 5); // Move next bar up
         }
 
-        if (isGhostMode) {
-            long elapsed = now - ghostStartTime;
-            if (elapsed < GHOST_DURATION) {
-                double remainingRatio = 1.0 - (double)elapsed / GHOST_DURATION;
-                int barWidth = (int)(BAR_MAX_WIDTH * remainingRatio);
+        if (engine.isGhostMode()) {
+            double remainingRatio = (double)engine.getGhostRemaining() / engine.getGhostDuration();
+            int barWidth = (int)(BAR_MAX_WIDTH * remainingRatio);
 
-                g2d.setColor(Color.DARK_GRAY);
-                g2d.fillRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
-                g2d.setColor(FoodType.GHOST.color);
-                g2d.fillRect(BAR_X, barY, barWidth, BAR_HEIGHT);
-                g2d.setColor(Color.WHITE);
-                g2d.drawRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
-            }
+            g2d.setColor(Color.DARK_GRAY);
+            g2d.fillRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
+            g2d.setColor(foodColor(SnakeEngine.FoodType.GHOST));
+            g2d.fillRect(BAR_X, barY, barWidth, BAR_HEIGHT);
+            g2d.setColor(Color.WHITE);
+            g2d.drawRect(BAR_X, barY, BAR_MAX_WIDTH, BAR_HEIGHT);
+        }
+    }
+
+    /** p50/p99 of every telemetry metric, listed under the score. */
+    private void drawTelemetryHud(Graphics2D g2d) {
+        g2d.setFont(HUD_FONT);
+        g2d.setColor(HUD_COLOR);
+        int y = 36;
+        for (int i = 0; i < Telemetry.NAMES.length; i++) {
+            LatencyHistogram h = telemetry.histograms[i];
+            g2d.drawString(String.format("%-9s %7.2f %7.2f ms", Telemetry.NAMES[i],
+                    h.percentileNanos(0.50) / 1e6, h.percentileNanos(0.99) / 1e6), 10, y);
+            y += 12;
         }
     }
 
-    private void drawOverlay(Graphics2D g2d, String text) {
-        g2d.setColor(new Color(0, 0, 0, 150)); // Semi-transparent overlay
+    private void drawOverlay(Graphics2D g2d, SpriteAtlas.Text text) {
+        g2d.setColor(OVERLAY_COLOR);
         g2d.fillRect(0, 0, getWidth(), getHeight());
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 30));
-        FontMetrics metrics = getFontMetrics(g2d.getFont());
-        g2d.drawString(text, (getWidth() - metrics.stringWidth(text)) / 2, getHeight() / 2);
+        text.draw(g2d, (getWidth() - text.width) / 2, getHeight() / 2);
     }
 
     @Override
-    public void actionPerformed(ActionEvent e) {
-        move();
-        repaint();
+    public int tick() {
+        synchronized (frameLock) {
+            if (isAutopilotOn) {
+                input.clear();
+                engine.setDirection(autopilot.choose(engine));
+            } else {
+                applyQueuedTurn();
+            }
+            move();
+            if (spectators != null) {
+                spectators.publish(engine);
+            }
+            return engine.tickDelay();
+        }
+    }
+
+    /** Applies at most one queued turn per tick, so fast double turns don't fold into a reversal. */
+    private void applyQueuedTurn() {
+        char turn = input.pollTurn(engine.getDirection());
+        if (turn != 0) {
+            engine.setDirection(turn);
+            long inputTime = input.polledTime();
+            telemetry.inputToTick.record(System.nanoTime() - inputTime);
+            unpresentedInputTime = inputTime;
+        }
+    }
+
+    @Override
+    public void render() {
+        BufferStrategy strategy = gameCanvas.getBufferStrategy();
+        if (strategy == null) {
+            // Not on screen yet (or headless), let Swing paint it instead
+            repaint();
+            return;
+        }
+        do {
+            do {
+                // The strategy hands out a new Graphics each frame, about 350 bytes that can't be reused;
+                // drawFrame() itself allocates nothing, since everything it draws is cached
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    drawFrame(g2d);
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        if (unpresentedInputTime != 0) {
+            telemetry.inputToFrame.record(System.nanoTime() - unpresentedInputTime);
+            unpresentedInputTime = 0;
+        }
     }
 
     @Override
@@ -600,23 +901,41 @@ public class App extends JPanel implements ActionListener, KeyListener {
             return;
         }
 
+        // Press 'S' while paused to save the game, to pick up later even after quitting
+        if (keyCode == KeyEvent.VK_S && gameState == GameState.PAUSED) {
+            checkpointGame();
+            return;
+        }
+
         // Ignore movement keys if game is not running or is paused
         if (gameState != GameState.PLAYING) {
             return;
         }
 
+        // Press 'A' to hand the snake to the autopilot and back
+        if (keyCode == KeyEvent.VK_A) {
+            isAutopilotOn = !isAutopilotOn;
+            return;
+        }
+
+        // Press 'T' to show or hide the timing overlay
+        if (keyCode == KeyEvent.VK_T) {
+            isHudOn = !isHudOn;
+            return;
+        }
+
         switch (keyCode) {
             case KeyEvent.VK_UP:
-                if (direction != 'D') direction = 'U';
+                input.offer('U', System.nanoTime());
                 break;
             case KeyEvent.VK_DOWN:
-                if (direction != 'U') direction = 'D';
+                input.offer('D', System.nanoTime());
                 break;
             case KeyEvent.VK_LEFT:
-                if (direction != 'R') direction = 'L';
+                input.offer('L', System.nanoTime());
                 break;
             case KeyEvent.VK_RIGHT:
-                if (direction != 'L') direction = 'R';
+                input.offer('R', System.nanoTime());
                 break;
         }
     }
@@ -628,12 +947,14 @@ public class App extends JPanel implements ActionListener, KeyListener {
     public void keyReleased(KeyEvent e) {}
 
     public static void main(String[] args) {
-        JFrame frame = new JFrame("Snake Game");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setResizable(false);
-        frame.add(new App());
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Snake Game");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.setResizable(false);
+            frame.add(new App());
+            frame.pack();
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+        });
     }
 }
@@ -0,0 +1,460 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Several snakes sharing one board, from a four-player room up to a
+ * 10,000x10,000 world with tens of thousands of snakes. Food works as in
+ * SnakeEngine, growth values and FoodOdds included. Power-ups don't: every
+ * snake in an arena moves on the same tick, so SPEED_BOOST and GHOST just grow
+ * the snake by one.
+ *
+ * Every snake moves at once, and the outcome doesn't depend on the order the
+ * snakes are listed in:
+ *   1. Every live snake picks its next cell, and every snake that isn't eating
+ *      moves its tail off first, so following a tail is safe as in single player.
+ *   2. A snake dies if its head leaves the board (walls mode), lands on any
+ *      body, or lands on the same cell as another head (both die).
+ *   3. Survivors move; eaters then eat in snake order; dead snakes are cleared.
+ *
+ * The board is split into horizontal bands. step(pool) runs each phase for all
+ * bands in parallel: snakes are grouped by the band their head is in, and
+ * head-on collisions are settled by the band of the contested cell, looking at
+ * moves from that band and its two neighbours. Only eating, which draws new
+ * food from the shared Random, runs serially. The parallel and serial steps
+ * produce identical games.
+ */
+public class Arena {
+    private static final int DEAD = -2;        // nextCells marker for a snake that dies this tick
+    private static final int BAND_ROWS = 64;   // Board rows per shard
+    private static final long NO_MOVE = -1L;
+
+    private final int width;
+    private final int height;
+    private final boolean wrapAround;
+    private final FoodOdds foodOdds;
+    private final Random random;
+
+    private final byte[] occupancy;  // Segments on each cell; stacked bonus tails count more than once
+    private final long[] foodBits;   // One bit per cell holding food
+    private final SnakeBody[] bodies;
+    private final char[] directions;
+    private final boolean[] inUse;
+    private final boolean[] alive;
+    private final int[] nextCells;   // Phase 1 results, -1 for a snake that left the board
+    private final boolean[] eating;
+    private final int[] foodCells;
+    private final SnakeEngine.FoodType[] foodTypes;
+    private final int[] foodSlotKeys;  // Open-addressed map from food cell to food item
+    private final int[] foodSlotItems;
+    private long tick;
+
+    // Shards: live snakes grouped by the band their head is in, rebuilt every tick
+    private final int bands;
+    private final int[] bandStart;
+    private final int[] bandFill;
+    private final int[] bandSnakes;
+    private final long[] moves;         // (next cell << 32 | snake) per bandSnakes entry, or NO_MOVE
+    private final long[][] contested;   // Per band scratch for sorting the moves that land in it
+
+    public Arena(int width, int height, boolean wrapAround, int maxSnakes, int foodCount,
+                 FoodOdds foodOdds, Random random) {
+        this.width = width;
+        this.height = height;
+        this.wrapAround = wrapAround;
+        this.foodOdds = foodOdds;
+        this.random = random;
+        this.occupancy = new byte[width * height];
+        this.foodBits = new long[(width * height + 63) >>> 6];
+        this.bodies = new SnakeBody[maxSnakes];
+        this.directions = new char[maxSnakes];
+        this.inUse = new boolean[maxSnakes];
+        this.alive = new boolean[maxSnakes];
+        this.nextCells = new int[maxSnakes];
+        this.eating = new boolean[maxSnakes];
+        this.foodCells = new int[foodCount];
+        this.foodTypes = new SnakeEngine.FoodType[foodCount];
+        int slots = Integer.highestOneBit(Math.max(foodCount, 2) * 2 - 1) << 1;
+        this.foodSlotKeys = new int[slots];
+        this.foodSlotItems = new int[slots];
+        Arrays.fill(foodSlotKeys, -1);
+
+        this.bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+        this.bandStart = new int[bands + 1];
+        this.bandFill = new int[bands];
+        this.bandSnakes = new int[maxSnakes];
+        this.moves = new long[maxSnakes];
+        this.contested = new long[bands][16];
+
+        for (int i = 0; i < maxSnakes; i++) {
+            bodies[i] = new SnakeBody(16);
+        }
+        for (int f = 0; f < foodCount; f++) {
+            foodCells[f] = -1;
+            spawnFood(f, 1);
+        }
+    }
+
+    /** Claims a free slot and spawns a snake in it. Returns the slot, or -1 if the arena is full. */
+    public int addSnake() {
+        for (int i = 0; i < inUse.length; i++) {
+            if (!inUse[i]) {
+                inUse[i] = true;
+                respawn(i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void removeSnake(int i) {
+        if (alive[i]) clearSnake(i);
+        inUse[i] = false;
+    }
+
+    /** Puts a length-1 snake on a random empty cell. Leaves it dead if no cell could be found. */
+    public void respawn(int i) {
+        if (alive[i]) clearSnake(i);
+        int cell = randomEmptyCell();
+        if (cell < 0) return;
+        bodies[i].clear();
+        bodies[i].addHead(cell % width, cell / width);
+        occupancy[cell]++;
+        directions[i] = SnakePolicy.DIRECTIONS[random.nextInt(4)];
+        alive[i] = true;
+    }
+
+    /** Changes a snake's direction unless it would reverse onto itself. */
+    public void setDirection(int i, char direction) {
+        if (!SnakePolicy.isReverse(directions[i], direction)) {
+            directions[i] = direction;
+        }
+    }
+
+    /** Advances every live snake by one tick on the calling thread. */
+    public void step() {
+        step(null);
+    }
+
+    /** Advances every live snake by one tick, running the bands in parallel on the pool if one is given. */
+    public void step(ForkJoinPool pool) {
+        tick++;
+        groupByBand();
+        forEachBand(pool, this::pickMoves);
+        forEachBand(pool, this::killBlocked);
+        forEachBand(pool, this::killHeadOn);
+        forEachBand(pool, this::moveSurvivors);
+        for (int i = 0; i < bodies.length; i++) {
+            if (alive[i] && eating[i] && nextCells[i] != DEAD) {
+                eat(i, nextCells[i]);
+            }
+        }
+        forEachBand(pool, this::clearDead);
+    }
+
+    /**
+     * Steers every live snake away from walls and bodies, keeping its heading
+     * most of the time and turning at random now and then. Decisions are drawn
+     * from the seed, tick and snake index, so they don't depend on the thread count.
+     */
+    public void autoSteer(ForkJoinPool pool, long seed) {
+        groupByBand();
+        forEachBand(pool, band -> {
+            for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+                steer(bandSnakes[k], BatchSimulator.gameSeed(seed, tick * bodies.length + bandSnakes[k]));
+            }
+        });
+    }
+
+    private void steer(int i, long roll) {
+        char current = directions[i];
+        boolean turn = (roll & 0xFF) < 8;  // About one tick in 32
+        int offset = (int) ((roll >>> 8) & 3);
+        char best = current;
+        boolean bestFree = !turn && isFree(nextCell(i, current));
+        for (int d = 0; d < 4 && !bestFree; d++) {
+            char candidate = SnakePolicy.DIRECTIONS[(d + offset) & 3];
+            if (SnakePolicy.isReverse(current, candidate) || (turn && candidate == current)) continue;
+            if (isFree(nextCell(i, candidate))) {
+                best = candidate;
+                bestFree = true;
+            }
+        }
+        directions[i] = best;
+    }
+
+    private boolean isFree(int cell) {
+        return cell >= 0 && occupancy[cell] == 0;
+    }
+
+    // --- Phases; each handles the snakes (or cells) of one band ---
+
+    /** Counting sort of live snakes by head band, in snake order within each band. */
+    private void groupByBand() {
+        Arrays.fill(bandStart, 0);
+        for (int i = 0; i < bodies.length; i++) {
+            if (alive[i]) bandStart[bandOf(i) + 1]++;
+        }
+        for (int b = 0; b < bands; b++) {
+            bandStart[b + 1] += bandStart[b];
+        }
+        System.arraycopy(bandStart, 0, bandFill, 0, bands);
+        for (int i = 0; i < bodies.length; i++) {
+            if (alive[i]) bandSnakes[bandFill[bandOf(i)]++] = i;
+        }
+    }
+
+    private void pickMoves(int band) {
+        for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+            int i = bandSnakes[k];
+            int next = nextCell(i, directions[i]);
+            nextCells[i] = next;
+            eating[i] = next >= 0 && hasFood(next);
+            if (!eating[i]) popTail(i);
+            moves[k] = next >= 0 ? ((long) next << 32) | i : NO_MOVE;
+        }
+    }
+
+    private void killBlocked(int band) {
+        for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+            int i = bandSnakes[k];
+            if (moves[k] == NO_MOVE || occupancy[(int) (moves[k] >>> 32)] > 0) {
+                nextCells[i] = DEAD;
+            }
+        }
+    }
+
+    /** Kills every pair of heads that target the same cell in this band. */
+    private void killHeadOn(int band) {
+        long[] scratch = contested[band];
+        int count = 0;
+        int previous = -1;
+        for (int source : new int[] {band - 1, band, band + 1}) {
+            int b = wrapAround ? Math.floorMod(source, bands) : source;
+            if (b < 0 || b >= bands || b == previous || (source == band + 1 && b == Math.floorMod(band - 1, bands))) {
+                continue;
+            }
+            previous = b;
+            for (int k = bandStart[b]; k < bandStart[b + 1]; k++) {
+                long move = moves[k];
+                if (move == NO_MOVE || (int) (move >>> 32) / width / BAND_ROWS != band) continue;
+                if (count == scratch.length) {
+                    scratch = contested[band] = Arrays.copyOf(scratch, count * 2);
+                }
+                scratch[count++] = move;
+            }
+        }
+        Arrays.sort(scratch, 0, count);
+        for (int k = 1; k < count; k++) {
+            if ((scratch[k] >>> 32) == (scratch[k - 1] >>> 32)) {
+                nextCells[(int) scratch[k]] = DEAD;
+                nextCells[(int) scratch[k - 1]] = DEAD;
+            }
+        }
+    }
+
+    private void moveSurvivors(int band) {
+        for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+            int i = bandSnakes[k];
+            int next = nextCells[i];
+            if (next == DEAD) continue;
+            bodies[i].addHead(next % width, next / width);
+            occupancy[next]++;
+        }
+    }
+
+    private void clearDead(int band) {
+        for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+            int i = bandSnakes[k];
+            if (nextCells[i] == DEAD) clearSnake(i);
+        }
+    }
+
+    private int bandOf(int i) {
+        return bodies[i].y(0) / BAND_ROWS;
+    }
+
+    private void forEachBand(ForkJoinPool pool, IntConsumer phase) {
+        if (pool == null || bands == 1) {
+            for (int b = 0; b < bands; b++) phase.accept(b);
+        } else {
+            pool.invoke(new BandTask(phase, 0, bands));
+        }
+    }
+
+    private static class BandTask extends RecursiveAction {
+        private final IntConsumer phase;
+        private final int from;
+        private final int to;
+
+        BandTask(IntConsumer phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                phase.accept(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(phase, from, mid), new BandTask(phase, mid, to));
+        }
+    }
+
+    // --- Board helpers ---
+
+    /** The board index the snake's head moves to in a direction, or -1 if it leaves the board. */
+    private int nextCell(int i, char direction) {
+        int x = bodies[i].x(0);
+        int y = bodies[i].y(0);
+        switch (direction) {
+            case 'U': y--; break;
+            case 'D': y++; break;
+            case 'L': x--; break;
+            case 'R': x++; break;
+        }
+        if (wrapAround) {
+            if (x < 0) x = width - 1;
+            else if (x >= width) x = 0;
+            if (y < 0) y = height - 1;
+            else if (y >= height) y = 0;
+        } else if (x < 0 || x >= width || y < 0 || y >= height) {
+            return -1;
+        }
+        return y * width + x;
+    }
+
+    private void eat(int i, int cell) {
+        int f = removeFoodSlot(cell);
+        SnakeEngine.FoodType type = foodTypes[f];
+        SnakeBody body = bodies[i];
+        if (type.growthValue > 1) {
+            int tail = body.get(body.size() - 1);
+            for (int k = 0; k < type.growthValue - 1; k++) {
+                body.addTail(SnakeBody.unpackX(tail), SnakeBody.unpackY(tail));
+                occupancy[SnakeBody.unpackY(tail) * width + SnakeBody.unpackX(tail)]++;
+            }
+        } else if (type.growthValue < 0) {
+            // As in single player, also undo the growth from keeping the tail
+            int totalToRemove = -type.growthValue + 1;
+            for (int k = 0; k < totalToRemove && body.size() > 3; k++) {
+                popTail(i);
+            }
+        }
+        foodBits[cell >>> 6] &= ~(1L << cell);
+        foodCells[f] = -1;
+        spawnFood(f, body.size());
+    }
+
+    private void popTail(int i) {
+        int tail = bodies[i].removeTail();
+        occupancy[SnakeBody.unpackY(tail) * width + SnakeBody.unpackX(tail)]--;
+    }
+
+    private void clearSnake(int i) {
+        while (bodies[i].size() > 0) {
+            popTail(i);
+        }
+        alive[i] = false;
+    }
+
+    private boolean hasFood(int cell) {
+        return (foodBits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** Places food item f, with its type gated on the size of the snake that ate the last one. */
+    private void spawnFood(int f, int eaterSize) {
+        int cell = randomEmptyCell();
+        if (cell < 0) {
+            foodTypes[f] = null;
+            return;
+        }
+        foodCells[f] = cell;
+        foodBits[cell >>> 6] |= 1L << cell;
+        foodTypes[f] = foodOdds.pick(eaterSize, wrapAround, random.nextDouble());
+        addFoodSlot(cell, f);
+    }
+
+    private void addFoodSlot(int cell, int f) {
+        int mask = foodSlotKeys.length - 1;
+        int slot = mix(cell) & mask;
+        while (foodSlotKeys[slot] != -1) slot = (slot + 1) & mask;
+        foodSlotKeys[slot] = cell;
+        foodSlotItems[slot] = f;
+    }
+
+    /** Removes the cell from the food map and returns its food item. */
+    private int removeFoodSlot(int cell) {
+        int mask = foodSlotKeys.length - 1;
+        int slot = mix(cell) & mask;
+        while (foodSlotKeys[slot] != cell) slot = (slot + 1) & mask;
+        int f = foodSlotItems[slot];
+
+        // Backward-shift deletion keeps every probe chain unbroken without tombstones
+        int hole = slot;
+        for (int next = (hole + 1) & mask; foodSlotKeys[next] != -1; next = (next + 1) & mask) {
+            int home = mix(foodSlotKeys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                foodSlotKeys[hole] = foodSlotKeys[next];
+                foodSlotItems[hole] = foodSlotItems[next];
+                hole = next;
+            }
+        }
+        foodSlotKeys[hole] = -1;
+        return f;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** A random cell with no snake or food, or -1 if none turned up. */
+    private int randomEmptyCell() {
+        // Arenas are mostly empty, so a few random probes almost always succeed
+        for (int attempt = 0; attempt < 64; attempt++) {
+            int cell = random.nextInt(occupancy.length);
+            if (occupancy[cell] == 0 && !hasFood(cell)) return cell;
+        }
+        int start = random.nextInt(occupancy.length);
+        for (int k = 0; k < occupancy.length; k++) {
+            int cell = (start + k) % occupancy.length;
+            if (occupancy[cell] == 0 && !hasFood(cell)) return cell;
+        }
+        return -1;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean isWrapAroundMode() { return wrapAround; }
+    public long getTick() { return tick; }
+    public int capacity() { return bodies.length; }
+    public int bandCount() { return bands; }
+    public boolean isInUse(int i) { return inUse[i]; }
+    public boolean isAlive(int i) { return alive[i]; }
+    public char getDirection(int i) { return directions[i]; }
+    public int length(int i) { return alive[i] ? bodies[i].size() : 0; }
+    public int segmentX(int i, int k) { return bodies[i].x(k); }
+    public int segmentY(int i, int k) { return bodies[i].y(k); }
+    public boolean isSnakeAt(int x, int y) { return occupancy[y * width + x] > 0; }
+    public boolean isFoodAt(int x, int y) { return hasFood(y * width + x); }
+
+    public int foodCount() { return foodCells.length; }
+    /** Board index of a food item, or -1 if it could not be placed. */
+    public int foodCell(int f) { return foodCells[f]; }
+    public SnakeEngine.FoodType foodType(int f) { return foodTypes[f]; }
+
+    /** The food item on a cell holding food. */
+    public SnakeEngine.FoodType foodTypeAt(int x, int y) {
+        int cell = y * width + x;
+        int mask = foodSlotKeys.length - 1;
+        int slot = mix(cell) & mask;
+        while (foodSlotKeys[slot] != cell) slot = (slot + 1) & mask;
+        return foodTypes[foodSlotItems[slot]];
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a large arena of steering bots at several thread counts and reports
+ * how ticking scales. Every run starts from the same seed; the state checksum
+ * printed for each must match, since the parallel step is deterministic.
+ *
+ * The thread counts take turns, round after round, so none is measured while
+ * the JIT is still compiling or gets the benefit of running last. The first
+ * rounds are untimed warm-up, and each count reports the median of the rest.
+ *
+ *   java -Xmx2g ArenaSimulator [--size 10000] [--snakes 50000] [--food 20000]
+ *                              [--ticks 500] [--threads 1,2,4,8] [--wrap] [--seed 1]
+ *                              [--warmup 2] [--repeats 5]
+ */
+public class ArenaSimulator {
+    public static void main(String[] args) {
+        int size = 10_000;
+        int snakes = 50_000;
+        int food = 20_000;
+        int ticks = 500;
+        String threadCounts = "1,2,4," + Runtime.getRuntime().availableProcessors();
+        boolean wrap = false;
+        long seed = 1;
+        int warmupRounds = 2;
+        int repeats = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--snakes": snakes = Integer.parseInt(args[++i]); break;
+                case "--food": food = Integer.parseInt(args[++i]); break;
+                case "--ticks": ticks = Integer.parseInt(args[++i]); break;
+                case "--threads": threadCounts = args[++i]; break;
+                case "--wrap": wrap = true; break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--warmup": warmupRounds = Integer.parseInt(args[++i]); break;
+                case "--repeats": repeats = Math.max(1, Integer.parseInt(args[++i])); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("%dx%d board, %d snakes, %d food, %d ticks, %d cores, %d warm-up + %d timed rounds%n",
+                size, size, snakes, food, ticks, Runtime.getRuntime().availableProcessors(), warmupRounds, repeats);
+        String[] counts = threadCounts.split(",");
+        int[] threads = new int[counts.length];
+        ForkJoinPool[] pools = new ForkJoinPool[counts.length];
+        for (int c = 0; c < counts.length; c++) {
+            threads[c] = Integer.parseInt(counts[c].trim());
+            pools[c] = threads[c] > 1 ? new ForkJoinPool(threads[c]) : null;
+        }
+
+        double[][] seconds = new double[counts.length][repeats];
+        long[] checksums = new long[counts.length];
+        boolean consistent = true;
+        for (int round = 0; round < warmupRounds + repeats; round++) {
+            for (int c = 0; c < counts.length; c++) {
+                Arena arena = newArena(size, snakes, food, wrap, seed);
+                long start = System.nanoTime();
+                play(arena, ticks, seed, pools[c]);
+                double elapsed = (System.nanoTime() - start) / 1e9;
+                long checksum = checksum(arena);
+                if (round > 0 || c > 0) consistent &= checksum == checksums[0];
+                checksums[c] = checksum;
+                if (round >= warmupRounds) seconds[c][round - warmupRounds] = elapsed;
+            }
+        }
+        for (ForkJoinPool pool : pools) {
+            if (pool != null) pool.shutdown();
+        }
+
+        double baseline = 0;
+        long snakeTicks = (long) snakes * ticks;
+        for (int c = 0; c < counts.length; c++) {
+            Arrays.sort(seconds[c]);
+            double median = seconds[c][repeats / 2];
+            double ticksPerSecond = ticks / median;
+            if (baseline == 0) baseline = ticksPerSecond;
+            System.out.printf("%3d threads: %8.1f ticks/s  %6.2fx  %,14.0f snake-ticks/s  (%.2f-%.2f s)  checksum %016x%n",
+                    threads[c], ticksPerSecond, ticksPerSecond / baseline, snakeTicks / median,
+                    seconds[c][0], seconds[c][repeats - 1], checksums[c]);
+        }
+        if (!consistent) {
+            System.out.println("Checksums differ between runs: the parallel step is not deterministic");
+            System.exit(1);
+        }
+    }
+
+    private static Arena newArena(int size, int snakes, int food, boolean wrap, long seed) {
+        Arena arena = new Arena(size, size, wrap, snakes, food, FoodOdds.DEFAULT, new Random(seed));
+        for (int i = 0; i < snakes; i++) {
+            arena.addSnake();
+        }
+        return arena;
+    }
+
+    /** Steers and steps the arena for the given number of ticks, respawning dead snakes at once. */
+    private static void play(Arena arena, int ticks, long seed, ForkJoinPool pool) {
+        for (int t = 0; t < ticks; t++) {
+            arena.autoSteer(pool, seed);
+            arena.step(pool);
+            for (int i = 0; i < arena.capacity(); i++) {
+                if (!arena.isAlive(i)) arena.respawn(i);
+            }
+        }
+    }
+
+    /** A hash of every snake and food item, for checking that runs ended in the same state. */
+    static long checksum(Arena arena) {
+        long hash = arena.getTick();
+        for (int i = 0; i < arena.capacity(); i++) {
+            for (int k = 0; k < arena.length(i); k++) {
+                hash = hash * 31 + arena.segmentX(i, k) * 65_537L + arena.segmentY(i, k);
+            }
+            hash = hash * 31 + arena.getDirection(i);
+        }
+        for (int f = 0; f < arena.foodCount(); f++) {
+            SnakeEngine.FoodType type = arena.foodType(f);
+            hash = hash * 31 + arena.foodCell(f) * 8L + (type == null ? 7 : type.ordinal());
+        }
+        return hash;
+    }
+}
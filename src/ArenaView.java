@@ -0,0 +1,163 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Watches a large arena of steering bots through a window onto the board.
+ * Only the cells inside the viewport are painted, so the cost of a frame
+ * doesn't depend on the size of the board. Arrow keys pan, F follows the
+ * first snake, and a status line shows how long each tick took.
+ *
+ *   java -Xmx2g ArenaView [--size 10000] [--snakes 50000] [--food 20000] [--threads N] [--wrap]
+ */
+public class ArenaView extends JPanel implements GameLoop.Callbacks, KeyListener {
+    private static final int VIEW_COLUMNS = 64;
+    private static final int VIEW_ROWS = 40;
+    private static final int CELL_SIZE = 14;
+    private static final int PAN_STEP = 8;
+    private static final int TICK_MILLIS = 100;
+    private static final long SEED = 1;
+
+    private final Arena arena;
+    private final ForkJoinPool pool;
+    private final Object frameLock = new Object();  // Guards the arena between the loop and the EDT
+    private int viewX;
+    private int viewY;
+    private volatile boolean following = true;
+    private long lastTickNanos;
+
+    ArenaView(Arena arena, ForkJoinPool pool) {
+        this.arena = arena;
+        this.pool = pool;
+        setPreferredSize(new Dimension(VIEW_COLUMNS * CELL_SIZE, VIEW_ROWS * CELL_SIZE));
+        setBackground(Color.BLACK);
+        setFocusable(true);
+        addKeyListener(this);
+    }
+
+    @Override
+    public int tick() {
+        synchronized (frameLock) {
+            long start = System.nanoTime();
+            arena.autoSteer(pool, SEED);
+            arena.step(pool);
+            for (int i = 0; i < arena.capacity(); i++) {
+                if (!arena.isAlive(i)) arena.respawn(i);
+            }
+            lastTickNanos = System.nanoTime() - start;
+            if (following) centreOn(arena.segmentX(0, 0), arena.segmentY(0, 0));
+        }
+        return TICK_MILLIS;
+    }
+
+    @Override
+    public void render() {
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        synchronized (frameLock) {
+            for (int row = 0; row < VIEW_ROWS; row++) {
+                int y = viewY + row;
+                if (y >= arena.getHeight()) break;
+                for (int column = 0; column < VIEW_COLUMNS; column++) {
+                    int x = viewX + column;
+                    if (x >= arena.getWidth()) break;
+                    if (arena.isSnakeAt(x, y)) {
+                        g2d.setColor(Color.GREEN);
+                        g2d.fillRect(column * CELL_SIZE, row * CELL_SIZE, CELL_SIZE - 1, CELL_SIZE - 1);
+                    } else if (arena.isFoodAt(x, y)) {
+                        g2d.setColor(App.foodColor(arena.foodTypeAt(x, y)));
+                        g2d.fillOval(column * CELL_SIZE, row * CELL_SIZE, CELL_SIZE - 1, CELL_SIZE - 1);
+                    }
+                }
+            }
+
+            // Heads are only known per snake, so mark the one being followed
+            if (arena.isAlive(0)) {
+                int column = arena.segmentX(0, 0) - viewX;
+                int row = arena.segmentY(0, 0) - viewY;
+                if (column >= 0 && column < VIEW_COLUMNS && row >= 0 && row < VIEW_ROWS) {
+                    g2d.setColor(Color.ORANGE);
+                    g2d.fillRect(column * CELL_SIZE, row * CELL_SIZE, CELL_SIZE - 1, CELL_SIZE - 1);
+                }
+            }
+
+            g2d.setColor(Color.WHITE);
+            g2d.drawString(String.format("tick %d  view %d,%d  %.2f ms/tick%s", arena.getTick(), viewX, viewY,
+                    lastTickNanos / 1e6, following ? "  following" : ""), 6, getHeight() - 6);
+        }
+    }
+
+    private void centreOn(int x, int y) {
+        viewX = clamp(x - VIEW_COLUMNS / 2, arena.getWidth() - VIEW_COLUMNS);
+        viewY = clamp(y - VIEW_ROWS / 2, arena.getHeight() - VIEW_ROWS);
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, Math.max(0, max)));
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        synchronized (frameLock) {
+            switch (e.getKeyCode()) {
+                case KeyEvent.VK_UP: following = false; centreOn(viewX + VIEW_COLUMNS / 2, viewY + VIEW_ROWS / 2 - PAN_STEP); break;
+                case KeyEvent.VK_DOWN: following = false; centreOn(viewX + VIEW_COLUMNS / 2, viewY + VIEW_ROWS / 2 + PAN_STEP); break;
+                case KeyEvent.VK_LEFT: following = false; centreOn(viewX + VIEW_COLUMNS / 2 - PAN_STEP, viewY + VIEW_ROWS / 2); break;
+                case KeyEvent.VK_RIGHT: following = false; centreOn(viewX + VIEW_COLUMNS / 2 + PAN_STEP, viewY + VIEW_ROWS / 2); break;
+                case KeyEvent.VK_F: following = true; break;
+                default: return;
+            }
+        }
+        repaint();
+    }
+
+    @Override
+    public void keyTyped(KeyEvent e) {}
+
+    @Override
+    public void keyReleased(KeyEvent e) {}
+
+    public static void main(String[] args) {
+        int size = 10_000;
+        int snakes = 50_000;
+        int food = 20_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean wrap = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--snakes": snakes = Integer.parseInt(args[++i]); break;
+                case "--food": food = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--wrap": wrap = true; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Arena arena = new Arena(size, size, wrap, snakes, food, FoodOdds.DEFAULT, new Random(SEED));
+        for (int i = 0; i < snakes; i++) {
+            arena.addSnake();
+        }
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+        JFrame frame = new JFrame("Snake Arena");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        ArenaView view = new ArenaView(arena, pool);
+        frame.add(view);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        new GameLoop(view).start(TICK_MILLIS);
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Plays the game by breadth-first search from the head to the nearest food
+ * item, treating the body like the level's walls and wrapping at the edges in
+ * wrap-around mode. All search state lives in arrays allocated once per board,
+ * so choosing a move allocates nothing. If the search runs past its time
+ * budget, or no food can be reached, it falls back to SnakePolicy.GREEDY's
+ * safe move.
+ *
+ * Not thread-safe: use one Autopilot per engine.
+ */
+public class Autopilot implements SnakePolicy {
+    private static final int CHECK_CLOCK_EVERY = 64;  // Expansions between System.nanoTime() calls
+
+    private final int width;
+    private final int height;
+    private final long budgetNanos;
+    private final int[] queue;
+    private final int[] visitedStamp;  // Cell was reached in the search whose stamp matches
+    private final byte[] firstMove;    // Index into DIRECTIONS of the head's move on the path to each cell
+    private int stamp;
+    private long searches;
+    private long fallbacks;
+
+    public Autopilot(int width, int height, long budgetNanos) {
+        this.width = width;
+        this.height = height;
+        this.budgetNanos = budgetNanos;
+        this.queue = new int[width * height];
+        this.visitedStamp = new int[width * height];
+        this.firstMove = new byte[width * height];
+    }
+
+    @Override
+    public char choose(SnakeEngine engine) {
+        searches++;
+        int move = search(engine);
+        if (move >= 0 && !engine.wouldCollide(DIRECTIONS[move])) {
+            return DIRECTIONS[move];
+        }
+        fallbacks++;
+        return SnakePolicy.GREEDY.choose(engine);
+    }
+
+    /** Returns the first move of a shortest path to any food item, or -1 if none was found in time. */
+    private int search(SnakeEngine engine) {
+        int headX = engine.segmentX(0);
+        int headY = engine.segmentY(0);
+        if (!hasFood(engine) || !engine.isOnBoard(headX, headY)) return -1;
+
+        long deadline = System.nanoTime() + budgetNanos;
+        if (++stamp == 0) {
+            // Stamp wrapped around; start the visited marks afresh
+            Arrays.fill(visitedStamp, 0);
+            stamp = 1;
+        }
+        int tailX = engine.segmentX(engine.length() - 1);
+        int tailY = engine.segmentY(engine.length() - 1);
+        char current = engine.getDirection();
+        boolean wrap = engine.isWrapAroundMode();
+
+        int head = 0;
+        int tail = 0;
+        int start = headY * width + headX;
+        visitedStamp[start] = stamp;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            if ((head % CHECK_CLOCK_EVERY) == 0 && head > 0 && System.nanoTime() > deadline) {
+                return -1;
+            }
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                if (cell == start && SnakePolicy.isReverse(current, DIRECTIONS[d])) continue;
+
+                int nx = x + (d == 2 ? -1 : d == 3 ? 1 : 0);
+                int ny = y + (d == 0 ? -1 : d == 1 ? 1 : 0);
+                if (wrap) {
+                    if (nx < 0) nx = width - 1; else if (nx >= width) nx = 0;
+                    if (ny < 0) ny = height - 1; else if (ny >= height) ny = 0;
+                } else if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+                    continue;
+                }
+
+                int next = ny * width + nx;
+                if (visitedStamp[next] == stamp) continue;
+                // The tail will have moved on by the time we get there
+                if (engine.isSnakeAt(nx, ny) && (nx != tailX || ny != tailY)) continue;
+                if (engine.isWall(nx, ny)) continue;
+
+                visitedStamp[next] = stamp;
+                firstMove[next] = (cell == start) ? (byte) d : firstMove[cell];
+                if (engine.getFoodTypeAt(nx, ny) != null) return firstMove[next];
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasFood(SnakeEngine engine) {
+        for (int item = 0; item < engine.getFoodCount(); item++) {
+            if (engine.getFoodType(item) != null) return true;
+        }
+        return false;
+    }
+
+    public long getSearches() { return searches; }
+    public long getFallbacks() { return fallbacks; }
+}
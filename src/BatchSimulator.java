@@ -0,0 +1,277 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Plays many headless games in parallel to tune difficulty and food odds.
+ * Every combination of speed preset, food-odds scale, shift of the snake
+ * sizes that gate special food, and wall mode is played for the requested
+ * number of games by a scripted policy, and the score, game-length and
+ * power-up distributions are reported per combination.
+ *
+ * Each game seeds its own Random from the run seed and the game's index, so a
+ * run is reproducible no matter how the work is split across threads.
+ *
+ *   java BatchSimulator [--games 100000] [--seed 1] [--threads N] [--max-ticks 20000]
+ *                       [--speeds 150:3,100:5,70:7] [--odds-scales 0.5,1,1.5]
+ *                       [--gate-shifts -5,0,5] [--wrap both|on|off] [--policy greedy|autopilot]
+ *                       [--csv results.csv]
+ */
+public class BatchSimulator {
+    private static final int BOARD_WIDTH = 35;
+    private static final int BOARD_HEIGHT = 35;
+    private static final int GAMES_PER_TASK = 256;
+    private static final int TICK_BUCKET = 50;  // Game lengths are histogrammed in 50-tick buckets
+    private static final long AUTOPILOT_BUDGET_NANOS = 200_000;
+
+    /** One point in the parameter sweep. */
+    private static class Config {
+        final int initialGameSpeed;
+        final int speedIncrement;
+        final double oddsScale;
+        final int gateShift;  // Added to every special food's minimum snake size
+        final boolean wrapAround;
+        final FoodOdds foodOdds;
+
+        Config(int initialGameSpeed, int speedIncrement, double oddsScale, int gateShift, boolean wrapAround) {
+            this.initialGameSpeed = initialGameSpeed;
+            this.speedIncrement = speedIncrement;
+            this.oddsScale = oddsScale;
+            this.gateShift = gateShift;
+            this.wrapAround = wrapAround;
+            this.foodOdds = FoodOdds.DEFAULT.scaled(oddsScale).shifted(gateShift);
+        }
+
+        SnakeEngine newEngine(Random random) {
+            return new SnakeEngine(BOARD_WIDTH, BOARD_HEIGHT, wrapAround,
+                    initialGameSpeed, speedIncrement, foodOdds, random);
+        }
+    }
+
+    /** Totals for a range of games; partial results are merged up the fork-join tree. */
+    private static class Stats {
+        long games;
+        long totalScore;
+        long totalTicks;
+        long totalGameMillis;
+        long timedOut;
+        final long[] scoreCounts = new long[BOARD_WIDTH * BOARD_HEIGHT + 1];
+        final long[] tickCounts;
+        final long[] eaten = new long[SnakeEngine.FoodType.values().length];
+
+        Stats(int maxTicks) {
+            tickCounts = new long[maxTicks / TICK_BUCKET + 1];
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            totalScore += other.totalScore;
+            totalTicks += other.totalTicks;
+            totalGameMillis += other.totalGameMillis;
+            timedOut += other.timedOut;
+            for (int i = 0; i < scoreCounts.length; i++) scoreCounts[i] += other.scoreCounts[i];
+            for (int i = 0; i < tickCounts.length; i++) tickCounts[i] += other.tickCounts[i];
+            for (int i = 0; i < eaten.length; i++) eaten[i] += other.eaten[i];
+        }
+
+        /** Smallest histogram index at or below which the given fraction of games fall. */
+        static int percentile(long[] counts, long total, double fraction) {
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) return i;
+            }
+            return counts.length - 1;
+        }
+    }
+
+    private static class SimulationTask extends RecursiveTask<Stats> {
+        private final Config config;
+        private final Supplier<SnakePolicy> policies;
+        private final long seed;
+        private final int maxTicks;
+        private final long from;
+        private final long to;
+
+        SimulationTask(Config config, Supplier<SnakePolicy> policies, long seed, int maxTicks, long from, long to) {
+            this.config = config;
+            this.policies = policies;
+            this.seed = seed;
+            this.maxTicks = maxTicks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from > GAMES_PER_TASK) {
+                long mid = (from + to) >>> 1;
+                SimulationTask left = new SimulationTask(config, policies, seed, maxTicks, from, mid);
+                left.fork();
+                Stats stats = new SimulationTask(config, policies, seed, maxTicks, mid, to).compute();
+                stats.merge(left.join());
+                return stats;
+            }
+
+            // One engine and policy per leaf, reseeded and reset for every game
+            Stats stats = new Stats(maxTicks);
+            Random random = new Random();
+            SnakeEngine engine = config.newEngine(random);
+            SnakePolicy policy = policies.get();
+            for (long game = from; game < to; game++) {
+                random.setSeed(gameSeed(seed, game));
+                engine.reset();
+                play(engine, policy, stats);
+            }
+            return stats;
+        }
+
+        private void play(SnakeEngine engine, SnakePolicy policy, Stats stats) {
+            int ticks = 0;
+            long gameMillis = 0;
+            while (!engine.isGameOver() && ticks < maxTicks) {
+                SnakeEngine.FoodType food = engine.getFoodType();
+                gameMillis += engine.tickDelay();
+                if (engine.step(policy.choose(engine)) == SnakeEngine.StepResult.ATE) {
+                    stats.eaten[food.ordinal()]++;
+                }
+                ticks++;
+            }
+            if (!engine.isGameOver()) stats.timedOut++;
+
+            stats.games++;
+            stats.totalScore += engine.score();
+            stats.totalTicks += ticks;
+            stats.totalGameMillis += gameMillis;
+            stats.scoreCounts[Math.max(0, Math.min(engine.score(), stats.scoreCounts.length - 1))]++;
+            stats.tickCounts[ticks / TICK_BUCKET]++;
+        }
+    }
+
+    static long gameSeed(long runSeed, long game) {
+        // SplitMix64 finaliser, so neighbouring game indices get unrelated seeds
+        long z = runSeed * 0x9E3779B97F4A7C15L + game;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long games = 100_000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxTicks = 20_000;
+        String speeds = "150:3,100:5,70:7";
+        String oddsScales = "0.5,1,1.5";
+        String gateShifts = "0";
+        String wrap = "both";
+        String policyName = "greedy";
+        String csvFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games": games = Long.parseLong(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--max-ticks": maxTicks = Integer.parseInt(args[++i]); break;
+                case "--speeds": speeds = args[++i]; break;
+                case "--odds-scales": oddsScales = args[++i]; break;
+                case "--gate-shifts": gateShifts = args[++i]; break;
+                case "--wrap": wrap = args[++i]; break;
+                case "--policy": policyName = args[++i]; break;
+                case "--csv": csvFile = args[++i]; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        ArrayList<Config> configs = new ArrayList<>();
+        for (String speed : speeds.split(",")) {
+            String[] parts = speed.split(":");
+            for (String scale : oddsScales.split(",")) {
+                for (String shift : gateShifts.split(",")) {
+                    for (boolean wrapAround : new boolean[] {false, true}) {
+                        if (wrapAround ? wrap.equals("off") : wrap.equals("on")) continue;
+                        configs.add(new Config(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                                Double.parseDouble(scale.trim()), Integer.parseInt(shift.trim()), wrapAround));
+                    }
+                }
+            }
+        }
+
+        Supplier<SnakePolicy> policies;
+        if (policyName.equals("autopilot")) {
+            policies = () -> new Autopilot(BOARD_WIDTH, BOARD_HEIGHT, AUTOPILOT_BUDGET_NANOS);
+        } else {
+            policies = () -> SnakePolicy.GREEDY;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrintWriter csv = (csvFile != null) ? new PrintWriter(new BufferedWriter(new FileWriter(csvFile))) : null;
+        if (csv != null) {
+            csv.println("speed,increment,odds_scale,gate_shift,wrap,games,mean_score,p50_score,p90_score,p99_score,max_score,"
+                    + "mean_ticks,p50_ticks,p90_ticks,mean_game_seconds,timed_out,"
+                    + "normal_per_game,bonus_per_game,speed_boost_per_game,shrink_per_game,ghost_per_game");
+        }
+        System.out.printf("%-22s %9s %7s %5s %5s %5s %5s %8s %8s %8s  %s%n",
+                "config", "games", "score", "p50", "p90", "p99", "max", "ticks", "p50tick", "seconds",
+                "eaten/game N/B/S/Sh/G");
+
+        long totalGames = 0;
+        long totalTicks = 0;
+        long start = System.nanoTime();
+        for (Config config : configs) {
+            Stats stats = pool.invoke(new SimulationTask(config, policies, seed, maxTicks, 0, games));
+            totalGames += stats.games;
+            totalTicks += stats.totalTicks;
+            report(config, stats, csv);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%n%,d games, %,d ticks in %.1f s on %d threads (%,.0f games/s, %,.0f ticks/s)%n",
+                totalGames, totalTicks, seconds, threads, totalGames / seconds, totalTicks / seconds);
+
+        if (csv != null) csv.close();
+        pool.shutdown();
+    }
+
+    private static void report(Config config, Stats stats, PrintWriter csv) {
+        long n = Math.max(stats.games, 1);
+        int p50 = Stats.percentile(stats.scoreCounts, stats.games, 0.50);
+        int p90 = Stats.percentile(stats.scoreCounts, stats.games, 0.90);
+        int p99 = Stats.percentile(stats.scoreCounts, stats.games, 0.99);
+        int max = Stats.percentile(stats.scoreCounts, stats.games, 1.0);
+        int p50Ticks = Stats.percentile(stats.tickCounts, stats.games, 0.50) * TICK_BUCKET;
+        int p90Ticks = Stats.percentile(stats.tickCounts, stats.games, 0.90) * TICK_BUCKET;
+        double[] perGame = new double[stats.eaten.length];
+        for (int i = 0; i < perGame.length; i++) perGame[i] = (double) stats.eaten[i] / n;
+        double meanScore = (double) stats.totalScore / n;
+        double meanTicks = (double) stats.totalTicks / n;
+        double meanSeconds = stats.totalGameMillis / 1000.0 / n;
+
+        String name = String.format("%d:%d x%.2f %+d %s", config.initialGameSpeed, config.speedIncrement,
+                config.oddsScale, config.gateShift, config.wrapAround ? "wrap" : "walls");
+        System.out.printf("%-22s %9d %7.2f %5d %5d %5d %5d %8.0f %8d %8.1f  %.2f/%.2f/%.2f/%.2f/%.2f%n",
+                name, stats.games, meanScore, p50, p90, p99, max, meanTicks, p50Ticks, meanSeconds,
+                perGame[SnakeEngine.FoodType.NORMAL.ordinal()], perGame[SnakeEngine.FoodType.BONUS.ordinal()],
+                perGame[SnakeEngine.FoodType.SPEED_BOOST.ordinal()], perGame[SnakeEngine.FoodType.SHRINK.ordinal()],
+                perGame[SnakeEngine.FoodType.GHOST.ordinal()]);
+        if (stats.timedOut > 0) {
+            System.out.printf("%-22s %,d games hit the tick limit%n", "", stats.timedOut);
+        }
+
+        if (csv != null) {
+            csv.printf("%d,%d,%.3f,%d,%b,%d,%.4f,%d,%d,%d,%d,%.2f,%d,%d,%.3f,%d",
+                    config.initialGameSpeed, config.speedIncrement, config.oddsScale, config.gateShift, config.wrapAround,
+                    stats.games, meanScore, p50, p90, p99, max, meanTicks, p50Ticks, p90Ticks, meanSeconds,
+                    stats.timedOut);
+            for (double value : perGame) { // In FoodType order, matching the header
+                csv.printf(",%.4f", value);
+            }
+            csv.println();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Times effects in game ticks on a hashed timing wheel. Each effect is a
+ * small integer id fixed when the scheduler is built; scheduling, rescheduling
+ * and cancelling one are O(1), and advance() only looks at the effects due in
+ * the current slot. Effects further away than one turn of the wheel wait in
+ * their slot until the right turn comes round.
+ *
+ * Time only moves when advance() is called, so a paused game pauses its
+ * effects with it. Entries live in preallocated arrays linked by index,
+ * so nothing is allocated once the scheduler exists.
+ */
+public class EffectScheduler {
+    /** Told about each effect whose time has run out, from inside advance(). */
+    public interface Listener {
+        void expired(int effect);
+    }
+
+    private static final int NONE = -1;
+
+    private final Listener listener;
+    private final int mask;
+    private final int[] slotHeads;  // First effect in each slot, or NONE
+    private final int[] next;       // Doubly linked list of effects sharing a slot
+    private final int[] previous;
+    private final long[] deadlines; // Tick each effect expires on; meaningful only while active
+    private final int[] durations;  // Length it was last scheduled for, for progress bars
+    private final boolean[] active;
+    private long tick;
+
+    /** A wheel of slots (rounded up to a power of two) for effect ids 0 to effects-1. */
+    public EffectScheduler(int effects, int slots, Listener listener) {
+        this.listener = listener;
+        int size = Integer.highestOneBit(Math.max(slots, 2) * 2 - 1);
+        this.mask = size - 1;
+        this.slotHeads = new int[size];
+        this.next = new int[effects];
+        this.previous = new int[effects];
+        this.deadlines = new long[effects];
+        this.durations = new int[effects];
+        this.active = new boolean[effects];
+        Arrays.fill(slotHeads, NONE);
+    }
+
+    /** Starts the effect, or restarts it if it was running, so it expires after the given number of ticks. */
+    public void schedule(int effect, int ticks) {
+        if (active[effect]) unlink(effect);
+        long deadline = tick + Math.max(1, ticks);
+        deadlines[effect] = deadline;
+        durations[effect] = Math.max(1, ticks);
+        active[effect] = true;
+
+        int slot = (int) deadline & mask;
+        previous[effect] = NONE;
+        next[effect] = slotHeads[slot];
+        if (slotHeads[slot] != NONE) previous[slotHeads[slot]] = effect;
+        slotHeads[slot] = effect;
+    }
+
+    /** Restarts an effect part way through, as saved from remaining() and duration(). */
+    public void resume(int effect, int remaining, int duration) {
+        schedule(effect, remaining);
+        durations[effect] = duration;
+    }
+
+    /** Stops the effect without telling the listener. */
+    public void cancel(int effect) {
+        if (active[effect]) {
+            unlink(effect);
+            active[effect] = false;
+        }
+    }
+
+    /** Cancels every effect and starts counting from tick zero again. */
+    public void clear() {
+        Arrays.fill(slotHeads, NONE);
+        Arrays.fill(active, false);
+        tick = 0;
+    }
+
+    /** Moves time on by one tick and expires whatever was due on it. */
+    public void advance() {
+        tick++;
+        int effect = slotHeads[(int) tick & mask];
+        while (effect != NONE) {
+            int following = next[effect];
+            if (deadlines[effect] == tick) {
+                unlink(effect);
+                active[effect] = false;
+                listener.expired(effect);
+            }
+            effect = following;
+        }
+    }
+
+    private void unlink(int effect) {
+        int slot = (int) deadlines[effect] & mask;
+        if (previous[effect] != NONE) next[previous[effect]] = next[effect];
+        else slotHeads[slot] = next[effect];
+        if (next[effect] != NONE) previous[next[effect]] = previous[effect];
+    }
+
+    public boolean isActive(int effect) {
+        return active[effect];
+    }
+
+    /** Ticks until the effect expires, or 0 if it isn't running. */
+    public int remaining(int effect) {
+        return active[effect] ? (int) (deadlines[effect] - tick) : 0;
+    }
+
+    /** How many ticks the effect was last scheduled for. */
+    public int duration(int effect) {
+        return durations[effect];
+    }
+
+    public long getTick() {
+        return tick;
+    }
+}
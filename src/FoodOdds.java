@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * Decides which kind of food spawns. Special foods are checked in order; each
+ * applies once the snake is longer than its minimum size and the spawn roll
+ * is below its bound, so the bounds are cumulative. Anything else is NORMAL.
+ *
+ * pick() walks the bands, which is what single-food games and their replays
+ * rely on. sample() draws from the same distribution in O(1) with Vose alias
+ * tables. There is one table per stretch of snake sizes between two size gates
+ * and per wall mode, built once, since the odds only change at a gate.
+ */
+public class FoodOdds {
+    public static final FoodOdds DEFAULT = new FoodOdds(
+            new SnakeEngine.FoodType[] {
+                    SnakeEngine.FoodType.GHOST,       // 10% for ghost food (only in no-wrap mode)
+                    SnakeEngine.FoodType.SHRINK,      // 10% chance for shrink food
+                    SnakeEngine.FoodType.BONUS,       // 10% chance for bonus food
+                    SnakeEngine.FoodType.SPEED_BOOST  // 10% chance for speed boost
+            },
+            new int[] {10, 15, 5, 10},
+            new double[] {0.10, 0.20, 0.30, 0.40});
+
+    private final SnakeEngine.FoodType[] types;
+    private final int[] minSizes;
+    private final double[] bounds;
+
+    // Alias tables, indexed [sizeBand * 2 + (wrapAround ? 1 : 0)]
+    private final byte[] sizeBands;  // Band of each snake size up to the largest gate; bigger snakes use the last
+    private final SnakeEngine.FoodType[][] outcomes;
+    private final double[][] keepChances;
+    private final int[][] aliases;
+
+    public FoodOdds(SnakeEngine.FoodType[] types, int[] minSizes, double[] bounds) {
+        if (types.length != minSizes.length || types.length != bounds.length) {
+            throw new IllegalArgumentException("Need one size gate and one bound per food type");
+        }
+        this.types = types.clone();
+        this.minSizes = minSizes.clone();
+        this.bounds = bounds.clone();
+
+        int[] gates = Arrays.stream(minSizes).distinct().sorted().toArray();
+        int largest = gates.length == 0 ? 0 : gates[gates.length - 1];
+        sizeBands = new byte[largest + 2];
+        for (int size = 0; size < sizeBands.length; size++) {
+            int band = 0;
+            while (band < gates.length && size > gates[band]) band++;
+            sizeBands[size] = (byte) band;
+        }
+        outcomes = new SnakeEngine.FoodType[(gates.length + 1) * 2][];
+        keepChances = new double[outcomes.length][];
+        aliases = new int[outcomes.length][];
+        for (int size = 0; size < sizeBands.length; size++) {
+            // The first size in each band stands for the whole band
+            if (size > 0 && sizeBands[size] == sizeBands[size - 1]) continue;
+            buildAliasTable(sizeBands[size] * 2, size, false);
+            buildAliasTable(sizeBands[size] * 2 + 1, size, true);
+        }
+    }
+
+    /** Vose's alias method over the odds pick() gives a snake of the given size. */
+    private void buildAliasTable(int table, int snakeSize, boolean wrapAround) {
+        int n = types.length + 1;
+        SnakeEngine.FoodType[] outcome = new SnakeEngine.FoodType[n];
+        double[] scaled = new double[n];
+        double covered = 0;
+        for (int i = 0; i < types.length; i++) {
+            outcome[i] = types[i];
+            if (types[i] == SnakeEngine.FoodType.GHOST && wrapAround) continue;
+            if (snakeSize > minSizes[i]) {
+                double bound = Math.min(1.0, bounds[i]);
+                scaled[i] = Math.max(0, bound - covered) * n;
+                covered = Math.max(covered, bound);
+            }
+        }
+        outcome[types.length] = SnakeEngine.FoodType.NORMAL;
+        scaled[types.length] = (1 - covered) * n;
+
+        double[] keep = new double[n];
+        int[] alias = new int[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (scaled[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            keep[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] -= 1 - scaled[less];
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        // Whatever is left is 1 up to rounding
+        while (largeCount > 0) keep[large[--largeCount]] = 1;
+        while (smallCount > 0) keep[small[--smallCount]] = 1;
+
+        outcomes[table] = outcome;
+        keepChances[table] = keep;
+        aliases[table] = alias;
+    }
+
+    /** Picks a food type for a snake of the given size from a roll in [0, 1). */
+    public SnakeEngine.FoodType pick(int snakeSize, boolean wrapAround, double chance) {
+        for (int i = 0; i < types.length; i++) {
+            // Ghost food only makes sense when the walls are solid
+            if (types[i] == SnakeEngine.FoodType.GHOST && wrapAround) continue;
+            if (snakeSize > minSizes[i] && chance < bounds[i]) {
+                return types[i];
+            }
+        }
+        return SnakeEngine.FoodType.NORMAL;
+    }
+
+    /** Draws a food type for a snake of the given size from a roll in [0, 1), with the same odds as pick(). */
+    public SnakeEngine.FoodType sample(int snakeSize, boolean wrapAround, double chance) {
+        int table = sizeBands[Math.min(snakeSize, sizeBands.length - 1)] * 2 + (wrapAround ? 1 : 0);
+        double[] keep = keepChances[table];
+        double scaled = chance * keep.length;
+        int column = Math.min((int) scaled, keep.length - 1);
+        return scaled - column < keep[column] ? outcomes[table][column] : outcomes[table][aliases[table][column]];
+    }
+
+    /** The same bands with every band's width multiplied by scale. */
+    public FoodOdds scaled(double scale) {
+        double[] scaledBounds = new double[bounds.length];
+        double previous = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            scaledBounds[i] = Math.min(1.0, (i == 0 ? 0 : scaledBounds[i - 1]) + (bounds[i] - previous) * scale);
+            previous = bounds[i];
+        }
+        return new FoodOdds(types, minSizes, scaledBounds);
+    }
+
+    /** The same bands with every size gate moved by delta. */
+    public FoodOdds shifted(int delta) {
+        int[] shiftedSizes = new int[minSizes.length];
+        for (int i = 0; i < minSizes.length; i++) {
+            shiftedSizes[i] = Math.max(0, minSizes[i] + delta);
+        }
+        return new FoodOdds(types, shiftedSizes, bounds);
+    }
+
+    public int size() { return types.length; }
+    public SnakeEngine.FoodType type(int i) { return types[i]; }
+    public int minSize(int i) { return minSizes[i]; }
+    public double bound(int i) { return bounds[i]; }
+}
@@ -0,0 +1,142 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the game from its own thread instead of a javax.swing.Timer.
+ * Each tick is scheduled from the previous tick's deadline rather than from
+ * when it actually ran, so slow frames do not push the game off its pace.
+ * The last stretch before a deadline is spun rather than slept, which keeps
+ * ticks within a millisecond of their target on a typical desktop JVM.
+ */
+public class GameLoop implements Runnable {
+    public interface Callbacks {
+        /** Runs one game tick and returns the delay in milliseconds until the next one. */
+        int tick();
+
+        /** Presents the state left by the last tick. */
+        void render();
+    }
+
+    private static final long SPIN_NANOS = 1_000_000L;      // Busy-wait the final 1ms before a tick
+    private static final long MAX_LATE_NANOS = 250_000_000L; // Drop the backlog after a long stall
+
+    private final Callbacks callbacks;
+    private final Telemetry telemetry;  // May be null
+    private final Object pauseLock = new Object();
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Thread thread;
+    private int delayMillis;
+
+    public GameLoop(Callbacks callbacks) {
+        this(callbacks, null);
+    }
+
+    public GameLoop(Callbacks callbacks, Telemetry telemetry) {
+        this.callbacks = callbacks;
+        this.telemetry = telemetry;
+    }
+
+    public void start(int firstDelayMillis) {
+        start(firstDelayMillis, false);
+    }
+
+    /** Starts the loop, optionally paused so that no tick runs until setPaused(false). */
+    public void start(int firstDelayMillis, boolean startPaused) {
+        delayMillis = firstDelayMillis;
+        running = true;
+        paused = startPaused;
+        thread = new Thread(this, "Game Loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the loop. Safe to call from the loop thread itself, e.g. from tick(). */
+    public void stop() {
+        running = false;
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        Thread t = thread;
+        if (t != null && t != Thread.currentThread()) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void setPaused(boolean paused) {
+        synchronized (pauseLock) {
+            this.paused = paused;
+            pauseLock.notifyAll();
+        }
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime() + delayMillis * 1_000_000L;
+        while (running) {
+            if (paused) {
+                waitWhilePaused();
+                // Resume with a full tick, not whatever was left when we paused
+                nextTick = System.nanoTime() + delayMillis * 1_000_000L;
+                continue;
+            }
+
+            if (!sleepUntil(nextTick)) continue;
+
+            long tickStart = System.nanoTime();
+            delayMillis = callbacks.tick();
+            if (telemetry != null) {
+                telemetry.tickFinished(System.nanoTime() - tickStart, tickStart - nextTick, delayMillis);
+            }
+            nextTick += delayMillis * 1_000_000L;
+            long late = System.nanoTime() - nextTick;
+            if (late > MAX_LATE_NANOS) {
+                nextTick = System.nanoTime();
+            }
+            if (running) {
+                long renderStart = System.nanoTime();
+                callbacks.render();
+                if (telemetry != null) telemetry.renderFinished(System.nanoTime() - renderStart);
+            }
+        }
+    }
+
+    private void waitWhilePaused() {
+        // Present the paused frame once, then sleep until resumed or stopped
+        callbacks.render();
+        synchronized (pauseLock) {
+            while (paused && running) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /** Returns false if the wait was cut short by a pause or stop. */
+    private boolean sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (!running || paused) return false;
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        return running && !paused;
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.Random;
+
+/**
+ * A java.util.Random whose state can be read back and restored, so a saved
+ * game can carry on with exactly the food it would have spawned. It produces
+ * the same numbers as java.util.Random from the same seed. Unlike Random it
+ * isn't safe to share between threads, which a game's generator never is.
+ */
+public class GameRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;  // Set by Random's constructor through setSeed(), so no initializer here
+
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /** The generator's internal 48-bit state, which unlike the seed changes with every draw. */
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
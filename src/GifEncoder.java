@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes animated GIFs with one global 256-color palette. Each frame is
+ * compressed on its own, so several encoders can compress the frames of one
+ * file on different threads and their bytes be written out in order between
+ * writeHeader() and writeTrailer().
+ *
+ * The LZW dictionary is a flat child table indexed by (prefix code, byte), so
+ * compressing a pixel is one array read and a frame allocates nothing. Not
+ * thread-safe: use one encoder per thread.
+ */
+public class GifEncoder {
+    private static final int MIN_CODE_SIZE = 8;
+    private static final int CLEAR_CODE = 1 << MIN_CODE_SIZE;
+    private static final int END_CODE = CLEAR_CODE + 1;
+    private static final int FIRST_FREE_CODE = CLEAR_CODE + 2;
+    private static final int MAX_CODE_SIZE = 12;
+    private static final int MAX_CODES = 1 << MAX_CODE_SIZE;
+
+    private final char[] children = new char[MAX_CODES * 256];  // Code for (prefix, byte), or 0 if none yet
+    private final int[] assignedKeys = new int[MAX_CODES];        // Child slots to reset on a clear
+    private int nextCode;
+    private int codeSize;
+    private final byte[] block = new byte[255];                    // Data sub-block being filled
+    private int blockLength;
+    private int bitBuffer;
+    private int bitCount;
+    private OutputStream out;
+
+    /** The logical screen, the palette (256 RGB values) and a loop-forever extension. */
+    public static void writeHeader(OutputStream out, int width, int height, int[] palette) throws IOException {
+        out.write(new byte[] {'G', 'I', 'F', '8', '9', 'a'});
+        writeShort(out, width);
+        writeShort(out, height);
+        out.write(0xF7); // Global color table of 256 entries, 8 bits per primary
+        out.write(0);    // Background color index
+        out.write(0);    // Square pixels
+        for (int i = 0; i < 256; i++) {
+            int rgb = i < palette.length ? palette[i] : 0;
+            out.write(rgb >>> 16);
+            out.write(rgb >>> 8);
+            out.write(rgb);
+        }
+        out.write(new byte[] {0x21, (byte) 0xFF, 0x0B, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 0x03, 0x01, 0, 0, 0});
+    }
+
+    public static void writeTrailer(OutputStream out) throws IOException {
+        out.write(0x3B);
+    }
+
+    /**
+     * Writes one frame covering the rectangle at (x, y), drawn over the frames
+     * before it. Pixels are palette indices, row after row, stride apart;
+     * pixels of the transparent index, if it isn't -1, leave the frame below
+     * showing, so unchanged pixels compress into long runs.
+     */
+    public void writeFrame(OutputStream out, byte[] pixels, int stride, int x, int y, int width, int height,
+                           int delayCentis, int transparentIndex) throws IOException {
+        out.write(0x21);
+        out.write(0xF9);
+        out.write(4);
+        // Leave the frame in place for the next one to draw over
+        out.write(1 << 2 | (transparentIndex >= 0 ? 1 : 0));
+        writeShort(out, delayCentis);
+        out.write(Math.max(transparentIndex, 0));
+        out.write(0);
+
+        out.write(0x2C);
+        writeShort(out, x);
+        writeShort(out, y);
+        writeShort(out, width);
+        writeShort(out, height);
+        out.write(0);      // No local color table, not interlaced
+
+        out.write(MIN_CODE_SIZE);
+        compress(out, pixels, stride, width, height);
+        out.write(0);      // Block terminator
+    }
+
+    private void compress(OutputStream out, byte[] pixels, int stride, int width, int height) throws IOException {
+        this.out = out;
+        blockLength = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        resetDictionary();
+        codeSize = MIN_CODE_SIZE + 1;
+        writeCode(CLEAR_CODE);
+
+        int prefix = pixels[0] & 0xFF;
+        boolean first = true;
+        for (int row = 0; row < height; row++) {
+            int offset = row * stride;
+            for (int column = 0; column < width; column++) {
+                if (first) {
+                    first = false;
+                    continue; // The first pixel is already the prefix
+                }
+                int value = pixels[offset + column] & 0xFF;
+                int key = (prefix << 8) | value;
+                int child = children[key];
+                if (child != 0) {
+                    prefix = child;
+                    continue;
+                }
+                writeCode(prefix);
+                prefix = value;
+                if (nextCode < MAX_CODES) {
+                    assignedKeys[nextCode] = key;
+                    children[key] = (char) nextCode++;
+                } else {
+                    // Dictionary full: start again, as decoders expect after a clear code
+                    resetDictionary();
+                    writeCode(CLEAR_CODE);
+                    codeSize = MIN_CODE_SIZE + 1;
+                }
+            }
+        }
+        writeCode(prefix);
+        writeCode(END_CODE);
+        if (bitCount > 0) {
+            writeByte(bitBuffer & 0xFF);
+        }
+        flushBlock();
+        this.out = null;
+    }
+
+    private void resetDictionary() {
+        for (int code = FIRST_FREE_CODE; code < nextCode; code++) {
+            children[assignedKeys[code]] = 0;
+        }
+        nextCode = FIRST_FREE_CODE;
+    }
+
+    /** Packs a code least significant bit first, widening codes once the next code no longer fits. */
+    private void writeCode(int code) throws IOException {
+        bitBuffer |= code << bitCount;
+        bitCount += codeSize;
+        while (bitCount >= 8) {
+            writeByte(bitBuffer & 0xFF);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+        if (code != CLEAR_CODE && nextCode > (1 << codeSize) - 1 && codeSize < MAX_CODE_SIZE) {
+            codeSize++;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockLength == 0) return;
+        out.write(blockLength);
+        out.write(block, 0, blockLength);
+        blockLength = 0;
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+}
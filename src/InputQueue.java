@@ -0,0 +1,62 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direction presses waiting for the game loop, so quick successive turns each
+ * get their own tick instead of overwriting one another. One thread offers
+ * (the EDT) and one thread polls (the game loop); neither ever blocks.
+ *
+ * Each press keeps the System.nanoTime() it arrived at, for latency tracking.
+ */
+public class InputQueue {
+    private static final int CAPACITY = 8;  // Power of two; presses beyond this are dropped
+
+    private final char[] directions = new char[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private final AtomicLong head = new AtomicLong();  // Next slot to poll, written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // Next slot to fill, written by the producer
+    private long polledTime;
+
+    /** Adds a press. Returns false if the queue is full and the press was dropped. */
+    public boolean offer(char direction, long nanoTime) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) return false;
+        int slot = (int) (t & (CAPACITY - 1));
+        directions[slot] = direction;
+        times[slot] = nanoTime;
+        tail.lazySet(t + 1);  // Publishes the slot's contents to the consumer
+        return true;
+    }
+
+    /**
+     * Removes presses until one would turn the snake from its current direction,
+     * and returns it, or 0 if none does. Reversals and repeats of the current
+     * direction are discarded, so each tick applies at most one real turn.
+     */
+    public char pollTurn(char current) {
+        long h = head.get();
+        long t = tail.get();
+        while (h < t) {
+            int slot = (int) (h & (CAPACITY - 1));
+            char direction = directions[slot];
+            long time = times[slot];
+            h++;
+            if (direction != current && !SnakePolicy.isReverse(current, direction)) {
+                head.lazySet(h);
+                polledTime = time;
+                return direction;
+            }
+        }
+        head.lazySet(h);
+        return 0;
+    }
+
+    /** When the press last returned by pollTurn() arrived. */
+    public long polledTime() {
+        return polledTime;
+    }
+
+    /** Drops any presses still waiting; call from the consumer. */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+}
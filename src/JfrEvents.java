@@ -0,0 +1,68 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits Telemetry's per-tick and per-spawn records as Java Flight Recorder
+ * events, e.g. for `java -XX:StartFlightRecording=filename=snake.jfr App`.
+ * Needs Java 11 or later to compile; Telemetry loads it by name, so the game
+ * runs without it on Java 8.
+ */
+public class JfrEvents implements Telemetry.EventSink {
+    @Name("snake.Tick")
+    @Label("Game Tick")
+    @Category("Snake")
+    static class TickEvent extends Event {
+        @Label("Tick Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long tickDuration;
+
+        @Label("Started Late By")
+        @Timespan(Timespan.NANOSECONDS)
+        long late;
+
+        @Label("Next Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        long nextDelay;
+    }
+
+    @Name("snake.FoodSpawn")
+    @Label("Food Spawn")
+    @Category("Snake")
+    static class FoodSpawnEvent extends Event {
+        @Label("Food Type")
+        String type;
+
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Snake Length")
+        int snakeLength;
+    }
+
+    @Override
+    public void tick(long durationNanos, long lateNanos, int nextDelayMillis) {
+        TickEvent event = new TickEvent();
+        if (!event.isEnabled()) return;
+        event.tickDuration = durationNanos;
+        event.late = lateNanos;
+        event.nextDelay = nextDelayMillis;
+        event.commit();
+    }
+
+    @Override
+    public void foodSpawned(String type, int x, int y, int snakeLength) {
+        FoodSpawnEvent event = new FoodSpawnEvent();
+        if (!event.isEnabled()) return;
+        event.type = type;
+        event.x = x;
+        event.y = y;
+        event.snakeLength = snakeLength;
+        event.commit();
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in log-linear buckets: exact below 32 ns, then 32 buckets
+ * per power of two, so every reading is within about 3% whether it is a
+ * microsecond tick or a half-second stall. Recording is a couple of atomic
+ * increments with no locks or allocation, so any number of threads can record
+ * while another reads percentiles.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Lost a race with another recorder; retry against its value
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /** Upper edge of the bucket at or below which the given fraction of samples fall. */
+    public long percentileNanos(double fraction) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(lowestValueOf(i + 1) - 1, maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+
+    /** Clears the counts. Samples recorded while this runs may or may not survive it. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        maxNanos.set(0);
+    }
+
+    /** e.g. "p50 12.3 ms, p90 20.1 ms, p99 31.0 ms, max 33.2 ms (120 samples)" */
+    public String summary() {
+        return String.format("p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms (%d samples)",
+                percentileNanos(0.50) / 1e6, percentileNanos(0.90) / 1e6, percentileNanos(0.99) / 1e6,
+                maxNanos() / 1e6, count());
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        if (bucket >= BUCKETS) return Long.MAX_VALUE;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,371 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Top scores for every difficulty and wall mode, kept crash-safe on disk.
+ *
+ * New scores are appended to a journal of fixed-size, checksummed records; a
+ * torn record left by a crash fails its checksum and is ignored. Every so often
+ * the top entries are compacted into an index file, written to a temporary file,
+ * fsynced and atomically renamed into place, and a fresh journal is started.
+ * Index and journal carry a generation number so a crash between the two steps
+ * never counts a score twice. The index is built only from scores already in
+ * the journal; scores still queued go into the next journal, not into both.
+ * Startup reads the fixed-size index plus the short journal tail.
+ *
+ * All disk work happens on one background thread; submit() only queues the
+ * score and updates the in-memory tables. The thread also appends each game's
+ * replay to the archive, since a score's record points at its replay, and runs
+ * other small file jobs the game queues with execute(), in order with these.
+ */
+public class Leaderboard {
+    public static final int ENTRIES_PER_MODE = 10;
+    private static final int MODES = SnakeEngine.Difficulty.values().length * 2;
+    private static final int JOURNAL_MAGIC = 0x534E4B4A;  // "SNKJ"
+    private static final int INDEX_MAGIC = 0x534E4B49;    // "SNKI"
+    private static final int JOURNAL_HEADER_BYTES = 12;   // Magic, generation
+    private static final int RECORD_BYTES = 25;           // Mode, score, time, replay offset, CRC
+    private static final int COMPACT_AFTER_RECORDS = 64;
+
+    public static class Entry {
+        final int score;
+        final long time;
+        // Where the game's record starts in the replay archive, or -1; known once the writer appends it
+        volatile long replayOffset;
+
+        Entry(int score, long time, long replayOffset) {
+            this.score = score;
+            this.time = time;
+            this.replayOffset = replayOffset;
+        }
+
+        public int getScore() { return score; }
+        public long getTime() { return time; }
+        public long getReplayOffset() { return replayOffset; }
+    }
+
+    /** A finished game waiting for the writer: its replay, its score, or both. */
+    private static class Pending {
+        final int mode;
+        final Entry entry;    // Null for a game kept off the leaderboard
+        final byte[] replay;  // Null if there is no replay to archive
+
+        Pending(int mode, Entry entry, byte[] replay) {
+            this.mode = mode;
+            this.entry = entry;
+            this.replay = replay;
+        }
+    }
+
+    private final Path journalFile;
+    private final Path indexFile;
+    private final Path replayArchive;  // Null if replays are not kept
+    private final ArrayList<ArrayList<Entry>> tables = new ArrayList<>();
+    // What the journal and index hold so far; compaction snapshots this, never scores still queued
+    private final ArrayList<ArrayList<Entry>> journaled = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Leaderboard Writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private long generation;
+    private int journalRecords;
+
+    private Leaderboard(Path journalFile, Path indexFile, Path replayArchive) {
+        this.journalFile = journalFile;
+        this.indexFile = indexFile;
+        this.replayArchive = replayArchive;
+        for (int i = 0; i < MODES; i++) {
+            tables.add(new ArrayList<>());
+            journaled.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Loads the leaderboard stored under the given base name, e.g. "leaderboard",
+     * appending submitted replays to the given archive, if it isn't null.
+     */
+    public static Leaderboard open(String baseName, Path replayArchive) {
+        Leaderboard board = new Leaderboard(Paths.get(baseName + ".journal"), Paths.get(baseName + ".idx"), replayArchive);
+        board.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(board::close, "Leaderboard Flush"));
+        return board;
+    }
+
+    /**
+     * Records a finished game and its replay record, which may be null.
+     * Returns immediately; the disk writes happen in the background.
+     */
+    public synchronized void submit(SnakeEngine.Difficulty difficulty, boolean wrapAround, int score, byte[] replay) {
+        int mode = mode(difficulty, wrapAround);
+        Entry entry = new Entry(score, System.currentTimeMillis(), -1);
+        insert(tables, mode, entry);
+        pending.add(new Pending(mode, entry, replay));
+        writer.execute(this::flush);
+    }
+
+    /** Archives the replay of a game kept off the leaderboard, in the background. */
+    public void archive(byte[] replay) {
+        pending.add(new Pending(-1, null, replay));
+        writer.execute(this::flush);
+    }
+
+    /** Runs a small file job on the writer thread, after the writes already queued. */
+    public void execute(Runnable job) {
+        writer.execute(job);
+    }
+
+    public synchronized int best(SnakeEngine.Difficulty difficulty, boolean wrapAround) {
+        List<Entry> table = tables.get(mode(difficulty, wrapAround));
+        return table.isEmpty() ? 0 : table.get(0).score;
+    }
+
+    /** Best score across every mode. */
+    public synchronized int best() {
+        int best = 0;
+        for (List<Entry> table : tables) {
+            if (!table.isEmpty()) best = Math.max(best, table.get(0).score);
+        }
+        return best;
+    }
+
+    public synchronized List<Entry> top(SnakeEngine.Difficulty difficulty, boolean wrapAround) {
+        return Collections.unmodifiableList(new ArrayList<>(tables.get(mode(difficulty, wrapAround))));
+    }
+
+    /** Writes anything still queued and stops the background thread, waiting for it even if already closing. */
+    public void close() {
+        try {
+            writer.execute(this::flush);
+            writer.shutdown();
+        } catch (RejectedExecutionException e) {
+            // Already closing; still wait for the queued work to finish
+        }
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int mode(SnakeEngine.Difficulty difficulty, boolean wrapAround) {
+        return difficulty.ordinal() * 2 + (wrapAround ? 1 : 0);
+    }
+
+    private static void insert(List<ArrayList<Entry>> tables, int mode, Entry entry) {
+        ArrayList<Entry> table = tables.get(mode);
+        int i = 0;
+        while (i < table.size() && table.get(i).score >= entry.score) i++;
+        if (i >= ENTRIES_PER_MODE) return;
+        table.add(i, entry);
+        if (table.size() > ENTRIES_PER_MODE) table.remove(table.size() - 1);
+    }
+
+    // --- Background writes (writer thread only) ---
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+
+        // Batch everything queued so far into one write and one fsync per file
+        ArrayList<Pending> games = new ArrayList<>();
+        Pending game;
+        while ((game = pending.poll()) != null) {
+            games.add(game);
+        }
+        appendReplays(games);
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        int records = 0;
+        for (Pending queued : games) {
+            if (queued.entry == null) continue;
+            byte[] record = encodeRecord(queued.mode, queued.entry.score, queued.entry.time, queued.entry.replayOffset);
+            batch.write(record, 0, record.length);
+            records++;
+        }
+        if (records == 0) return;
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < JOURNAL_HEADER_BYTES) {
+                channel.write(journalHeader(generation), 0);
+            }
+            channel.write(ByteBuffer.wrap(batch.toByteArray()), channel.size());
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace(); // Log error if saving fails.
+            return;
+        }
+
+        for (Pending queued : games) {
+            if (queued.entry != null) insert(journaled, queued.mode, queued.entry);
+        }
+        journalRecords += records;
+        if (journalRecords >= COMPACT_AFTER_RECORDS) {
+            compact();
+        }
+    }
+
+    /** Appends the games' replays to the archive, before the score records that point at them. */
+    private void appendReplays(List<Pending> games) {
+        if (replayArchive == null) return;
+        try (FileChannel channel = FileChannel.open(replayArchive, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = channel.size();
+            for (Pending game : games) {
+                if (game.replay == null) continue;
+                ByteBuffer replay = ByteBuffer.wrap(game.replay);
+                long start = offset;
+                while (replay.hasRemaining()) {
+                    offset += channel.write(replay, offset);
+                }
+                if (game.entry != null) game.entry.replayOffset = start;
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace(); // Log error if saving fails; the scores are kept without their replays.
+        }
+    }
+
+    /** Folds the journal into a new index generation and starts an empty journal for it. */
+    private void compact() {
+        try {
+            writeAtomically(indexFile, encodeIndex(generation + 1));
+            // A crash here leaves an older-generation journal, which load() knows to skip
+            writeAtomically(journalFile, journalHeader(generation + 1));
+            generation++;
+            journalRecords = 0;
+        } catch (IOException e) {
+            e.printStackTrace(); // Compaction is retried after the next batch.
+        }
+    }
+
+    static void writeAtomically(Path target, ByteBuffer contents) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- Encoding ---
+
+    private static byte[] encodeRecord(int mode, int score, long time, long replayOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        buffer.put((byte) mode).putInt(score).putLong(time).putLong(replayOffset);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, RECORD_BYTES - 4);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static ByteBuffer journalHeader(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC).putLong(generation).flip();
+        return header;
+    }
+
+    private ByteBuffer encodeIndex(long generation) {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + MODES * (1 + ENTRIES_PER_MODE * 20) + 4);
+        buffer.putInt(INDEX_MAGIC).putLong(generation);
+        for (List<Entry> table : journaled) {
+            buffer.put((byte) table.size());
+            for (Entry entry : table) {
+                buffer.putInt(entry.score).putLong(entry.time).putLong(entry.replayOffset);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    // --- Loading ---
+
+    private void load() {
+        long indexGeneration = loadIndex();
+        generation = Math.max(indexGeneration, 0);
+        loadJournal(indexGeneration);
+    }
+
+    /** Returns the index's generation, or -1 if there is no usable index. */
+    private long loadIndex() {
+        if (!Files.exists(indexFile)) return -1;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - 4);
+            if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue() || buffer.getInt() != INDEX_MAGIC) {
+                return -1;
+            }
+            long indexGeneration = buffer.getLong();
+            for (int mode = 0; mode < MODES; mode++) {
+                int count = buffer.get();
+                for (int i = 0; i < count; i++) {
+                    Entry entry = new Entry(buffer.getInt(), buffer.getLong(), buffer.getLong());
+                    insert(tables, mode, entry);
+                    insert(journaled, mode, entry);
+                }
+            }
+            return indexGeneration;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private void loadJournal(long indexGeneration) {
+        if (!Files.exists(journalFile)) return;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+            if (buffer.remaining() < JOURNAL_HEADER_BYTES || buffer.getInt() != JOURNAL_MAGIC) return;
+            long journalGeneration = buffer.getLong();
+            if (indexGeneration >= 0 && journalGeneration < indexGeneration) {
+                // Already folded into the index by a compaction that did not finish; finish it
+                writeAtomically(journalFile, journalHeader(indexGeneration));
+                return;
+            }
+            generation = journalGeneration;
+
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_BYTES) {
+                int start = buffer.position();
+                crc.reset();
+                crc.update(buffer.array(), start, RECORD_BYTES - 4);
+                int mode = buffer.get();
+                int score = buffer.getInt();
+                long time = buffer.getLong();
+                long replayOffset = buffer.getLong();
+                if (buffer.getInt() != (int) crc.getValue() || mode < 0 || mode >= MODES) {
+                    buffer.position(start);
+                    break; // Torn write from a crash; nothing after it can be trusted
+                }
+                Entry entry = new Entry(score, time, replayOffset);
+                insert(tables, mode, entry);
+                insert(journaled, mode, entry);
+                journalRecords++;
+            }
+            if (buffer.hasRemaining()) {
+                // Cut the torn tail off so new records are appended on a record boundary
+                try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(buffer.position());
+                    channel.force(true);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
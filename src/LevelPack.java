@@ -0,0 +1,446 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A file of obstacle levels, memory-mapped and read one level at a time.
+ * Opening a pack maps only its directory; a level's data is mapped the first
+ * time it is asked for, so opening a pack and switching levels cost the same
+ * however many levels the pack holds.
+ *
+ * Each level stores its walls as a bitmap and two precomputed wall-distance
+ * fields, the number of steps from each cell to the nearest wall with the
+ * board's edges counted as walls and with them wrapping. Collision checks and
+ * the AI read these directly instead of searching the board.
+ *
+ * Format (big-endian):
+ *   "SNKL" magic, version (1 byte), level count,
+ *   per level: data offset (8 bytes), width, height, start cell, CRC32 of the data,
+ *   per level data: wall bitmap as longs, walls-mode distances (1 byte per cell),
+ *   wrap-mode distances (1 byte per cell).
+ *
+ *   java LevelPack build <pack> <level.txt>...   ('#' wall, '.' floor, 'S' start)
+ *   java LevelPack generate <pack> [--levels 1000] [--size 35x35] [--density 0.08] [--seed 1]
+ *   java LevelPack bench <pack> [--switches 100000]
+ */
+public class LevelPack implements Closeable {
+    public static final int MAX_DISTANCE = 255;  // Distances saturate here
+    private static final int MAGIC = 0x534E4B4C;  // "SNKL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 9;
+    private static final int ENTRY_BYTES = 24;
+
+    /** One level's walls and distance fields, read straight from the mapped file. */
+    public static class Level {
+        final int index;
+        final int width;
+        final int height;
+        final int startCell;
+        final int checksum;
+        private final ByteBuffer data;
+        private final int wallsDistanceBase;
+        private final int wrapDistanceBase;
+
+        Level(int index, int width, int height, int startCell, int checksum, ByteBuffer data) {
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            this.startCell = startCell;
+            this.checksum = checksum;
+            this.data = data;
+            this.wallsDistanceBase = bitmapBytes(width * height);
+            this.wrapDistanceBase = wallsDistanceBase + width * height;
+        }
+
+        /** True if the board cell (an index y * width + x) is a wall. */
+        public boolean isWall(int cell) {
+            return (data.getLong((cell >>> 6) << 3) & (1L << cell)) != 0;
+        }
+
+        /** Steps from the cell to the nearest wall, capped at MAX_DISTANCE. */
+        public int wallDistance(int cell, boolean wrapAround) {
+            return data.get((wrapAround ? wrapDistanceBase : wallsDistanceBase) + cell) & 0xFF;
+        }
+
+        public int getIndex() { return index; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public int getStartX() { return startCell % width; }
+        public int getStartY() { return startCell / width; }
+        public int getChecksum() { return checksum; }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer directory;
+    private final int levelCount;
+    private final Level[] levels;  // Filled in as levels are first asked for
+
+    private LevelPack(FileChannel channel, MappedByteBuffer directory, int levelCount) {
+        this.channel = channel;
+        this.directory = directory;
+        this.levelCount = levelCount;
+        this.levels = new Level[levelCount];
+    }
+
+    public static LevelPack open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a level pack");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            int version = header.get(4);
+            if (header.getInt(0) != MAGIC || version != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " level pack");
+            }
+            int count = header.getInt(5);
+            long directoryBytes = (long) count * ENTRY_BYTES;
+            if (count < 0 || HEADER_BYTES + directoryBytes > channel.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, directoryBytes);
+            return new LevelPack(channel, directory, count);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return levelCount;
+    }
+
+    /**
+     * The level at the given index, mapping its data and checking it against
+     * its CRC32 on first use. A damaged level is an IOException.
+     */
+    public synchronized Level level(int index) throws IOException {
+        Level level = levels[index];
+        if (level == null) {
+            int entry = index * ENTRY_BYTES;
+            long offset = directory.getLong(entry);
+            int width = directory.getInt(entry + 8);
+            int height = directory.getInt(entry + 12);
+            int startCell = directory.getInt(entry + 16);
+            int checksum = directory.getInt(entry + 20);
+            long bytes = dataBytes(width * height);
+            if (width <= 0 || height <= 0 || offset < 0 || offset + bytes > channel.size()) {
+                throw new IOException("Level " + index + " runs past the end of the pack");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+            if (checksum(data) != checksum || startCell < 0 || startCell >= width * height) {
+                throw new IOException("Level " + index + " of the pack is damaged");
+            }
+            level = new Level(index, width, height, startCell, checksum, data);
+            levels[index] = level;
+        }
+        return level;
+    }
+
+    /** CRC32 of a level's data, checked once when the level is first mapped. */
+    private static int checksum(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        ByteBuffer in = data.duplicate();
+        byte[] chunk = new byte[Math.min(in.remaining(), 1 << 16)];
+        while (in.hasRemaining()) {
+            int length = Math.min(chunk.length, in.remaining());
+            in.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int bitmapBytes(int cells) {
+        return ((cells + 63) >>> 6) << 3;
+    }
+
+    private static long dataBytes(int cells) {
+        return bitmapBytes(cells) + 2L * cells;
+    }
+
+    // --- Writing ---
+
+    /** A level being built: its size, walls and start cell. */
+    public static class Layout {
+        final int width;
+        final int height;
+        final boolean[] walls;
+        int startCell;
+
+        public Layout(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.walls = new boolean[width * height];
+            this.startCell = (height / 2) * width + width / 2;
+        }
+    }
+
+    /** Writes the layouts as a pack, computing each level's distance fields. */
+    public static void write(Path file, List<Layout> layouts) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer directory = ByteBuffer.allocate(HEADER_BYTES + layouts.size() * ENTRY_BYTES);
+            directory.putInt(MAGIC).put((byte) VERSION).putInt(layouts.size());
+            long offset = directory.capacity();
+            out.position(offset);
+            CRC32 crc = new CRC32();
+            for (Layout layout : layouts) {
+                ByteBuffer data = encode(layout);
+                crc.reset();
+                crc.update(data.array(), 0, data.limit());
+                directory.putLong(offset).putInt(layout.width).putInt(layout.height)
+                        .putInt(layout.startCell).putInt((int) crc.getValue());
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                offset += data.limit();
+            }
+            directory.flip();
+            out.position(0);
+            while (directory.hasRemaining()) {
+                out.write(directory);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(Layout layout) {
+        int cells = layout.width * layout.height;
+        if (layout.walls[layout.startCell]) {
+            throw new IllegalArgumentException("The start cell is a wall");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) dataBytes(cells));
+        long word = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (layout.walls[cell]) word |= 1L << cell;
+            if ((cell & 63) == 63 || cell == cells - 1) {
+                data.putLong(word);
+                word = 0;
+            }
+        }
+        data.put(distanceField(layout, false)).put(distanceField(layout, true));
+        data.flip();
+        return data;
+    }
+
+    /** Breadth-first search outwards from every wall at once. */
+    static byte[] distanceField(Layout layout, boolean wrapAround) {
+        int width = layout.width;
+        int height = layout.height;
+        int[] distance = new int[width * height];
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        for (int cell = 0; cell < distance.length; cell++) {
+            int x = cell % width;
+            int y = cell / width;
+            if (layout.walls[cell]) {
+                distance[cell] = 0;
+                queue[tail++] = cell;
+            } else if (!wrapAround && (x == 0 || y == 0 || x == width - 1 || y == height - 1)) {
+                distance[cell] = 1; // The edge is one step away
+                queue[tail++] = cell;
+            } else {
+                distance[cell] = Integer.MAX_VALUE;
+            }
+        }
+        // Walls go first in the queue, so order the seeds by distance before searching
+        int[] seeds = new int[tail];
+        int seedCount = 0;
+        for (int i = 0; i < tail; i++) if (distance[queue[i]] == 0) seeds[seedCount++] = queue[i];
+        for (int i = 0; i < tail; i++) if (distance[queue[i]] != 0) seeds[seedCount++] = queue[i];
+        System.arraycopy(seeds, 0, queue, 0, tail);
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 2 ? -1 : d == 3 ? 1 : 0);
+                int ny = y + (d == 0 ? -1 : d == 1 ? 1 : 0);
+                if (wrapAround) {
+                    nx = (nx + width) % width;
+                    ny = (ny + height) % height;
+                } else if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+                    continue;
+                }
+                int next = ny * width + nx;
+                if (distance[next] > distance[cell] + 1) {
+                    distance[next] = distance[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        byte[] field = new byte[distance.length];
+        for (int cell = 0; cell < field.length; cell++) {
+            field[cell] = (byte) Math.min(distance[cell], MAX_DISTANCE);
+        }
+        return field;
+    }
+
+    /** Reads a level drawn in text: '#' for a wall, 'S' for the start, anything else for floor. */
+    static Layout parse(List<String> lines) {
+        int width = 0;
+        for (String line : lines) width = Math.max(width, line.length());
+        Layout layout = new Layout(width, lines.size());
+        for (int y = 0; y < lines.size(); y++) {
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                if (line.charAt(x) == '#') layout.walls[y * width + x] = true;
+                if (line.charAt(x) == 'S') layout.startCell = y * width + x;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * A random level of wall segments. The start row is kept clear ahead of the
+     * snake, and floor the start can't reach is filled in, so food never lands
+     * somewhere unreachable.
+     */
+    static Layout generate(int width, int height, double density, Random random) {
+        Layout layout = new Layout(width, height);
+        int target = (int) (width * height * density);
+        int placed = 0;
+        while (placed < target) {
+            boolean horizontal = random.nextBoolean();
+            int length = 2 + random.nextInt(Math.max(1, Math.min(width, height) / 4));
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            for (int i = 0; i < length && placed < target; i++) {
+                int cx = horizontal ? x + i : x;
+                int cy = horizontal ? y : y + i;
+                if (cx >= width || cy >= height) break;
+                if (cy == layout.startCell / width) continue; // Room to get going
+                int cell = cy * width + cx;
+                if (!layout.walls[cell]) {
+                    layout.walls[cell] = true;
+                    placed++;
+                }
+            }
+        }
+
+        boolean[] reached = new boolean[width * height];
+        int[] queue = new int[width * height];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = layout.startCell;
+        reached[layout.startCell] = true;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 2 ? -1 : d == 3 ? 1 : 0);
+                int ny = y + (d == 0 ? -1 : d == 1 ? 1 : 0);
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                int next = ny * width + nx;
+                if (!reached[next] && !layout.walls[next]) {
+                    reached[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        for (int cell = 0; cell < reached.length; cell++) {
+            if (!reached[cell]) layout.walls[cell] = true;
+        }
+        return layout;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java LevelPack build|generate|bench <pack> [options]");
+            System.exit(2);
+        }
+        Path pack = Paths.get(args[1]);
+        switch (args[0]) {
+            case "build": {
+                List<Layout> layouts = new ArrayList<>();
+                for (int i = 2; i < args.length; i++) {
+                    layouts.add(parse(Files.readAllLines(Paths.get(args[i]))));
+                }
+                write(pack, layouts);
+                System.out.println("Wrote " + layouts.size() + " levels to " + pack);
+                break;
+            }
+            case "generate": {
+                int levels = 1000;
+                int width = 35;
+                int height = 35;
+                double density = 0.08;
+                long seed = 1;
+                for (int i = 2; i < args.length; i++) {
+                    switch (args[i]) {
+                        case "--levels": levels = Integer.parseInt(args[++i]); break;
+                        case "--size": {
+                            String[] size = args[++i].split("x");
+                            width = Integer.parseInt(size[0]);
+                            height = Integer.parseInt(size[size.length - 1]);
+                            break;
+                        }
+                        case "--density": density = Double.parseDouble(args[++i]); break;
+                        case "--seed": seed = Long.parseLong(args[++i]); break;
+                        default:
+                            System.err.println("Unknown option: " + args[i]);
+                            System.exit(2);
+                    }
+                }
+                Random random = new Random(seed);
+                List<Layout> layouts = new ArrayList<>();
+                for (int i = 0; i < levels; i++) {
+                    layouts.add(generate(width, height, density, random));
+                }
+                write(pack, layouts);
+                System.out.println("Wrote " + levels + " levels of " + width + "x" + height + " to " + pack);
+                break;
+            }
+            case "bench": {
+                int switches = args.length > 3 && args[2].equals("--switches") ? Integer.parseInt(args[3]) : 100_000;
+                bench(pack, switches);
+                break;
+            }
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.exit(2);
+        }
+    }
+
+    /** Times opening the pack and switching an engine between random levels. */
+    private static void bench(Path file, int switches) throws IOException {
+        long openStart = System.nanoTime();
+        try (LevelPack pack = open(file)) {
+            long openNanos = System.nanoTime() - openStart;
+            Random random = new Random(1);
+            long firstStart = System.nanoTime();
+            Level first = pack.level(random.nextInt(pack.size()));
+            long firstNanos = System.nanoTime() - firstStart;
+
+            long checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < switches; i++) {
+                Level level = pack.level(random.nextInt(pack.size()));
+                SnakeEngine engine = new SnakeEngine(level, false, SnakeEngine.Difficulty.NORMAL, 1, random);
+                checksum += engine.getFoodX() + level.wallDistance(level.startCell, false);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%d levels (%,d bytes): open %.3f ms, first level %.3f ms (%dx%d)%n",
+                    pack.size(), Files.size(file), openNanos / 1e6, firstNanos / 1e6, first.width, first.height);
+            System.out.printf("%,d switches with a new engine each: %.2f us per switch (checksum %d)%n",
+                    switches, nanos / 1e3 / switches, checksum);
+        }
+    }
+}
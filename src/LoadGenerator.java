@@ -0,0 +1,158 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Benchmarks TickServer by connecting many bot players from one thread. Each
+ * bot joins a room and turns at random now and then. The report shows how
+ * many state frames arrive per second, and how far the gaps between a
+ * player's frames stray from the room's tick interval. That is the jitter a
+ * real player would feel.
+ *
+ *   java LoadGenerator [--host localhost] [--port 7777] [--clients 1000]
+ *                      [--difficulty NORMAL] [--wrap] [--seconds 30]
+ */
+public class LoadGenerator {
+    private static final double TURN_CHANCE = 0.1;  // Per received frame
+    private static final int CONNECTS_PER_MILLI = 2; // Ramp up gently so the accept backlog keeps up
+
+    private static class Bot {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final ByteBuffer out = ByteBuffer.allocate(8);
+        int slot = -1;
+        int tickMillis;
+        char direction;
+        long lastFrame;
+
+        Bot(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = 7777;
+        int clients = 1000;
+        SnakeEngine.Difficulty difficulty = SnakeEngine.Difficulty.NORMAL;
+        boolean wrapAround = false;
+        int seconds = 30;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--clients": clients = Integer.parseInt(args[++i]); break;
+                case "--difficulty": difficulty = SnakeEngine.Difficulty.valueOf(args[++i].toUpperCase()); break;
+                case "--wrap": wrapAround = true; break;
+                case "--seconds": seconds = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Random random = new Random();
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        LatencyHistogram jitter = new LatencyHistogram();
+        long frames = 0;
+        long bytes = 0;
+        long turns = 0;
+        int connected = 0;
+        int disconnected = 0;
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        int opened = 0;
+        while (System.nanoTime() < end) {
+            // Open more connections until all clients are in
+            long allowed = Math.min(clients, (System.nanoTime() - start) / 1_000_000L * CONNECTS_PER_MILLI + 1);
+            for (; opened < allowed; opened++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new Bot(channel));
+            }
+
+            selector.select(10);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Bot bot = (Bot) key.attachment();
+                try {
+                    if (key.isConnectable()) {
+                        bot.channel.finishConnect();
+                        key.interestOps(SelectionKey.OP_READ);
+                        bot.out.clear();
+                        bot.out.put((byte) 'J').put((byte) difficulty.ordinal()).put((byte) (wrapAround ? 1 : 0));
+                        bot.out.flip();
+                        bot.channel.write(bot.out);
+                        connected++;
+                        continue;
+                    }
+                    if (!key.isReadable()) continue;
+                    int read = bot.channel.read(bot.in);
+                    if (read < 0) throw new EOFException();
+                    bytes += read;
+
+                    bot.in.flip();
+                    while (bot.in.remaining() >= 2 && bot.in.remaining() >= 2 + bot.in.getShort(bot.in.position())) {
+                        int length = bot.in.getShort();
+                        int next = bot.in.position() + length;
+                        byte type = bot.in.get();
+                        if (type == 'W') {
+                            bot.in.getInt();
+                            bot.slot = bot.in.get();
+                            bot.in.get();
+                            bot.in.get();
+                            bot.tickMillis = bot.in.getShort();
+                        } else if (type == 'S') {
+                            long now = System.nanoTime();
+                            if (bot.lastFrame != 0) {
+                                jitter.record(Math.abs(now - bot.lastFrame - bot.tickMillis * 1_000_000L));
+                            }
+                            bot.lastFrame = now;
+                            frames++;
+                            bot.in.getInt();
+                            bot.in.get();
+                            bot.direction = (char) bot.in.get(bot.in.position() + bot.slot * 6 + 1);
+                            if (random.nextDouble() < TURN_CHANCE) {
+                                char turn = SnakePolicy.DIRECTIONS[random.nextInt(4)];
+                                if (turn != bot.direction && !SnakePolicy.isReverse(bot.direction, turn)) {
+                                    bot.out.clear();
+                                    bot.out.put((byte) turn);
+                                    bot.out.flip();
+                                    bot.channel.write(bot.out);
+                                    turns++;
+                                }
+                            }
+                        }
+                        bot.in.position(next);
+                    }
+                    bot.in.compact();
+                } catch (IOException e) {
+                    key.cancel();
+                    bot.channel.close();
+                    disconnected++;
+                }
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d of %d clients connected, %d disconnected%n", connected, clients, disconnected);
+        System.out.printf("%,d frames (%,.0f/s), %.1f MB in (%.2f MB/s), %,d turns sent%n",
+                frames, frames / elapsed, bytes / 1e6, bytes / 1e6 / elapsed, turns);
+        System.out.printf("Frame interval jitter: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                jitter.percentileNanos(0.50) / 1e6, jitter.percentileNanos(0.90) / 1e6,
+                jitter.percentileNanos(0.99) / 1e6, jitter.maxNanos() / 1e6);
+        selector.close();
+    }
+}
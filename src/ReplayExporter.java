@@ -0,0 +1,586 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * Renders a recorded game to an animated GIF, or to numbered PNG frames for a
+ * video encoder, without a display and much faster than the game played.
+ *
+ *   java ReplayExporter replays.snkr [--record N | --offset BYTES] [--levels pack.snkl]
+ *                       [--out clip.gif] [--format gif|png] [--fps 25] [--speed 1] [--threads N]
+ *
+ * The record defaults to the last one in the archive. Exporting is a pipeline:
+ * one thread re-simulates the game and every few hundred ticks hands a worker a
+ * chunk holding a snapshot of the engine and the moves that follow it; workers
+ * restore the snapshot, draw each frame with the game's own renderer and
+ * compress it, cropped to what changed since the previous frame; one writer
+ * puts the chunks out in order. Chunks come from a fixed pool, so memory stays
+ * flat however long the game was.
+ */
+public class ReplayExporter {
+    private static final int CHUNK_TICKS = 256;
+    private static final int FINAL_FRAME_MILLIS = 2000;  // How long the last frame is held
+    private static final int MAX_GIF_FPS = 50;             // GIF delays are whole hundredths of a second
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final int TRANSPARENT = 255;            // Palette slot left for unchanged pixels
+
+    /**
+     * A run of ticks, from the simulator to a worker and then, encoded, to the
+     * writer. It starts on a state the previous chunk ended with, which the
+     * worker draws only as the base for its first difference.
+     */
+    private static class Chunk {
+        int sequence;
+        boolean first;
+        boolean last;        // Ends on the game's final state
+        long startMillis;    // Game time when the starting state appears
+        long randomState;
+        ByteBuffer state = ByteBuffer.allocate(0);
+        byte[] directions = new byte[CHUNK_TICKS];  // Direction set before each tick, or -1
+        int ticks;
+        int frames;
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        void addTick(int direction) {
+            if (ticks == directions.length) {
+                directions = Arrays.copyOf(directions, ticks * 2);
+            }
+            directions[ticks++] = (byte) direction;
+        }
+    }
+
+    private final ReplayVerifier.Header header;
+    private final ByteBuffer moves;  // The record from its first direction change
+    private final int totalTicks;
+    private final boolean png;
+    private final Path out;
+    private final int fps;
+    private final double speed;
+    private final int[] palette;
+    private final byte[] colorIndex;  // 15-bit RGB to palette index
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> work = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Chunk> done = new LinkedBlockingQueue<>();
+    private volatile Throwable failure;
+
+    private ReplayExporter(ReplayVerifier.Header header, ByteBuffer moves, boolean png, Path out, int fps,
+                           double speed, int threads) {
+        this.header = header;
+        this.moves = moves;
+        this.png = png;
+        this.out = out;
+        this.fps = fps;
+        this.speed = speed;
+
+        ByteBuffer scan = moves.duplicate();
+        while (ReplayVerifier.readVarint(scan) != 0) {
+            // Direction changes come before the totals
+        }
+        totalTicks = (int) ReplayVerifier.readVarint(scan);
+
+        palette = palette();
+        colorIndex = colorIndex(palette);
+        free = new ArrayBlockingQueue<>(threads * 2 + 2);
+        while (free.remainingCapacity() > 0) {
+            free.add(new Chunk());
+        }
+    }
+
+    // --- Timing ---
+
+    /** Index of the first output frame shown at or after the given game time. */
+    private long frameAt(long gameMillis) {
+        long micros = Math.round(gameMillis * 1000.0 / speed);
+        return (micros * fps + 999_999) / 1_000_000;
+    }
+
+    /** Start of an output frame in hundredths of a second, rounded so the delays add up exactly. */
+    private long centisAt(long frame) {
+        return (frame * 100 + fps / 2) / fps;
+    }
+
+    // --- Simulation (one thread) ---
+
+    private void simulate() throws InterruptedException {
+        GameRandom random = new GameRandom(header.seed);
+        SnakeEngine engine = header.newEngine(random);
+        ByteBuffer record = moves.duplicate();
+        long code = ReplayVerifier.readVarint(record);
+        int changeTick = code != 0 ? (int) ((code - 1) >>> 2) : -1;
+
+        int sequence = 0;
+        Chunk chunk = startChunk(engine, random, 0, sequence++, true);
+        long time = 0;
+        for (int tick = 0; ; tick++) {
+            boolean finalState = tick == totalTicks;
+            long end = time + (finalState ? FINAL_FRAME_MILLIS : engine.tickDelay());
+            if (finalState) {
+                chunk.last = true;
+                work.put(chunk);
+                return;
+            }
+            if (chunk.ticks >= CHUNK_TICKS && frameAt(end) > frameAt(time)) {
+                // Cut on a state that gets a frame, so the next chunk can diff against it
+                work.put(chunk);
+                chunk = startChunk(engine, random, time, sequence++, false);
+            }
+            int direction = -1;
+            while (tick == changeTick) {
+                direction = (int) ((code - 1) & 3);
+                engine.setDirection(SnakePolicy.DIRECTIONS[direction]);
+                code = ReplayVerifier.readVarint(record);
+                changeTick = code != 0 ? changeTick + (int) ((code - 1) >>> 2) : -1;
+            }
+            chunk.addTick(direction);
+            engine.step();
+            time = end;
+        }
+    }
+
+    private Chunk startChunk(SnakeEngine engine, GameRandom random, long time, int sequence, boolean first)
+            throws InterruptedException {
+        Chunk chunk = free.take();
+        chunk.sequence = sequence;
+        chunk.first = first;
+        chunk.last = false;
+        chunk.startMillis = time;
+        chunk.randomState = random.getState();
+        chunk.ticks = 0;
+        int bytes = engine.stateBytes();
+        if (chunk.state.capacity() < bytes) {
+            chunk.state = ByteBuffer.allocate(bytes);
+        }
+        chunk.state.clear();
+        engine.writeState(chunk.state);
+        chunk.state.flip();
+        return chunk;
+    }
+
+    // --- Rendering and encoding (worker threads) ---
+
+    private class Worker implements Runnable {
+        private final GameRandom random = new GameRandom(header.seed);
+        private final SnakeEngine engine = header.newEngine(random);
+        private final App app = App.offscreen(engine);
+        private final BufferedImage frame = new BufferedImage(app.getWidth(), app.getHeight(), BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D g2d = frame.createGraphics();
+        private final int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        private final int[] previous = new int[pixels.length];
+        private final byte[] indices = new byte[pixels.length];
+        private final GifEncoder gif = new GifEncoder();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] pngRow = new byte[1 + app.getWidth() * 3];
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk;
+                while ((chunk = work.take()).sequence >= 0) {
+                    export(chunk);
+                    done.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void export(Chunk chunk) throws IOException {
+            engine.readState(chunk.state.duplicate());
+            random.setState(chunk.randomState);
+            chunk.output.reset();
+            chunk.frames = 0;
+            long time = chunk.startMillis;
+            for (int i = 0; ; i++) {
+                boolean finalState = chunk.last && i == chunk.ticks;
+                long end = time + (finalState ? FINAL_FRAME_MILLIS : engine.tickDelay());
+                if (i == 0 && !chunk.first) {
+                    app.drawFrame(g2d);
+                    System.arraycopy(pixels, 0, previous, 0, pixels.length);
+                } else if (frameAt(end) > frameAt(time)) {
+                    app.drawFrame(g2d);
+                    if (png) {
+                        writePng(chunk, frameAt(time), frameAt(end), finalState);
+                    } else {
+                        writeGif(chunk, frameAt(time), frameAt(end), i == 0);
+                    }
+                    chunk.frames++;
+                }
+                if (i == chunk.ticks) return;
+                if (chunk.directions[i] >= 0) {
+                    engine.setDirection(SnakePolicy.DIRECTIONS[chunk.directions[i]]);
+                }
+                engine.step();
+                time = end;
+            }
+        }
+
+        /**
+         * Encodes the box around the pixels that differ from the previous frame,
+         * or the whole frame for the first; unchanged pixels inside the box are
+         * left transparent.
+         */
+        private void writeGif(Chunk chunk, long firstFrame, long nextFrame, boolean whole) throws IOException {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            int minX = 0, minY = 0, maxX = width - 1, maxY = height - 1;
+            if (!whole) {
+                minX = width;
+                minY = height;
+                maxX = -1;
+                maxY = -1;
+                for (int y = 0; y < height; y++) {
+                    int row = y * width;
+                    for (int x = 0; x < width; x++) {
+                        if (pixels[row + x] != previous[row + x]) {
+                            if (x < minX) minX = x;
+                            if (x > maxX) maxX = x;
+                            minY = Math.min(minY, y);
+                            maxY = y;
+                        }
+                    }
+                }
+                if (maxX < 0) {
+                    minX = minY = maxX = maxY = 0;  // Nothing changed; a one-pixel frame carries the delay
+                }
+            }
+
+            int boxWidth = maxX - minX + 1;
+            int i = 0;
+            for (int y = minY; y <= maxY; y++) {
+                int row = y * width;
+                for (int x = minX; x <= maxX; x++) {
+                    int rgb = pixels[row + x];
+                    if (!whole && rgb == previous[row + x]) {
+                        indices[i++] = (byte) TRANSPARENT;
+                    } else {
+                        previous[row + x] = rgb;
+                        indices[i++] = colorIndex[((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F)];
+                    }
+                }
+            }
+            gif.writeFrame(chunk.output, indices, boxWidth, minX, minY, boxWidth, maxY - minY + 1,
+                    (int) (centisAt(nextFrame) - centisAt(firstFrame)), whole ? -1 : TRANSPARENT);
+        }
+
+        /** Writes the frame as a PNG and adds it to the chunk's part of the ffconcat playlist. */
+        private void writePng(Chunk chunk, long firstFrame, long nextFrame, boolean finalState) throws IOException {
+            String name = String.format("frame-%07d.png", firstFrame);
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(out.resolve(name)), 1 << 16)) {
+                encodePng(file);
+            }
+            String entry = String.format(Locale.ROOT, "file '%s'\nduration %.3f\n", name,
+                    (nextFrame - firstFrame) / (double) fps);
+            if (finalState) {
+                entry += "file '" + name + "'\n";  // ffmpeg only honors the last duration if the file repeats
+            }
+            chunk.output.write(entry.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Writes the frame as an 8-bit RGB PNG. Each row is stored as the
+         * difference from the pixel to its left and deflated at the fastest
+         * level, which keeps the game's flat colors small at a fraction of
+         * ImageIO's cost.
+         */
+        private void encodePng(OutputStream file) throws IOException {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            file.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(contents);
+            data.writeInt(width);
+            data.writeInt(height);
+            data.write(new byte[] {8, 2, 0, 0, 0});  // 8 bits per sample, RGB, deflate, filtered, not interlaced
+            writePngChunk(file, "IHDR", contents);
+
+            contents.reset();
+            deflater.reset();
+            try (DeflaterOutputStream compressed = new DeflaterOutputStream(contents, deflater, 1 << 16)) {
+                pngRow[0] = 1;  // Sub filter
+                for (int y = 0; y < height; y++) {
+                    int left = 0;
+                    for (int x = 0, i = 1; x < width; x++) {
+                        int rgb = pixels[y * width + x];
+                        pngRow[i++] = (byte) ((rgb >> 16) - (left >> 16));
+                        pngRow[i++] = (byte) ((rgb >> 8) - (left >> 8));
+                        pngRow[i++] = (byte) (rgb - left);
+                        left = rgb;
+                    }
+                    compressed.write(pngRow, 0, 1 + width * 3);
+                }
+            }
+            writePngChunk(file, "IDAT", contents);
+            contents.reset();
+            writePngChunk(file, "IEND", contents);
+        }
+
+        private void writePngChunk(OutputStream file, String type, ByteArrayOutputStream contents) throws IOException {
+            byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            byte[] bytes = contents.toByteArray();
+            crc.reset();
+            crc.update(typeBytes);
+            crc.update(bytes);
+            DataOutputStream data = new DataOutputStream(file);
+            data.writeInt(bytes.length);
+            data.write(typeBytes);
+            data.write(bytes);
+            data.writeInt((int) crc.getValue());
+        }
+    }
+
+    private void fail(Throwable e) {
+        failure = e;
+        done.add(new Chunk());  // Wakes the writer
+    }
+
+    // --- Writing (calling thread) ---
+
+    /** Runs the pipeline and returns the number of frames written. */
+    private long export(int threads) throws IOException, InterruptedException {
+        Thread simulator = new Thread(() -> {
+            try {
+                simulate();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }, "Replay Simulator");
+        simulator.setDaemon(true);
+        // Workers are built here, one at a time, since each sets up its own Swing panel
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(new Worker(), "Replay Exporter " + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        simulator.start();
+
+        long frames = 0;
+        Path target = png ? Files.createDirectories(out).resolve("frames.ffconcat") : out;
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+            if (png) {
+                file.write("ffconcat version 1.0\n".getBytes(StandardCharsets.US_ASCII));
+            } else {
+                GifEncoder.writeHeader(file, header.width * App.CELL_SIZE, header.height * App.CELL_SIZE, palette);
+            }
+            // Chunks finish out of order; hold each until those before it are written
+            TreeMap<Integer, Chunk> waiting = new TreeMap<>();
+            int next = 0;
+            boolean finished = false;
+            while (!finished) {
+                Chunk chunk = done.take();
+                if (failure != null) {
+                    throw new IOException("Export failed", failure);
+                }
+                waiting.put(chunk.sequence, chunk);
+                while (!finished && (chunk = waiting.remove(next)) != null) {
+                    chunk.output.writeTo(file);
+                    frames += chunk.frames;
+                    finished = chunk.last;
+                    next++;
+                    free.put(chunk);
+                }
+            }
+            if (!png) {
+                GifEncoder.writeTrailer(file);
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                Chunk stop = new Chunk();
+                stop.sequence = -1;
+                work.add(stop);
+            }
+        }
+        return frames;
+    }
+
+    // --- Palette ---
+
+    /**
+     * The exact colors of every board tile and the walls, a gray ramp for the
+     * antialiased white text, and a 6x6x6 color cube for everything else. The
+     * last slot is left for transparency.
+     */
+    static int[] palette() {
+        LinkedHashSet<Integer> colors = new LinkedHashSet<>();
+        colors.add(0x000000);
+        colors.add(0xFFFFFF);
+        colors.add(App.WALL_COLOR.getRGB() & 0xFFFFFF);
+        // Tiles are sampled after drawing them on black, as the board layer does, ghost tiles included
+        int tiles = SpriteAtlas.foodTile(SnakeEngine.FoodType.values()[SnakeEngine.FoodType.values().length - 1]) + 1;
+        int cell = App.CELL_SIZE;
+        SpriteAtlas atlas = new SpriteAtlas(cell, null);
+        BufferedImage sample = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = sample.createGraphics();
+        for (int tile = 0; tile < tiles; tile++) {
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, cell, cell);
+            atlas.draw(g2d, tile, 0, 0);
+            colors.add(sample.getRGB(cell / 2, cell / 2) & 0xFFFFFF);
+        }
+        g2d.dispose();
+        for (int r = 0; r < 6; r++) {
+            for (int g = 0; g < 6; g++) {
+                for (int b = 0; b < 6; b++) {
+                    colors.add((r * 51) << 16 | (g * 51) << 8 | b * 51);
+                }
+            }
+        }
+        int grays = TRANSPARENT - colors.size();
+        for (int i = 1; i <= grays; i++) {
+            int gray = i * 255 / (grays + 1);
+            colors.add(gray << 16 | gray << 8 | gray);
+        }
+        for (int gray = 1; colors.size() < TRANSPARENT; gray++) {
+            colors.add(gray << 16 | gray << 8 | gray);  // Any the ramp repeated from the cube
+        }
+        int[] palette = new int[TRANSPARENT];
+        int i = 0;
+        for (int rgb : colors) {
+            if (i == palette.length) break;
+            palette[i++] = rgb;
+        }
+        return palette;
+    }
+
+    /** Nearest palette entry for every 15-bit color, with the palette's own colors mapping to themselves. */
+    static byte[] colorIndex(int[] palette) {
+        byte[] index = new byte[1 << 15];
+        for (int key = 0; key < index.length; key++) {
+            int r = (key >> 10) << 3 | 4, g = ((key >> 5) & 31) << 3 | 4, b = (key & 31) << 3 | 4;
+            int best = 0;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < palette.length; i++) {
+                int dr = r - (palette[i] >> 16 & 0xFF), dg = g - (palette[i] >> 8 & 0xFF), db = b - (palette[i] & 0xFF);
+                int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            index[key] = (byte) best;
+        }
+        // Exact colors win their bucket, listed first so the board colors win any ties
+        for (int i = palette.length - 1; i >= 0; i--) {
+            int rgb = palette[i];
+            index[((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F)] = (byte) i;
+        }
+        return index;
+    }
+
+    // --- Finding the record ---
+
+    /** Where record number index starts, counting from 0, or where the last record starts if index is negative. */
+    static long findRecord(FileChannel channel, int index) throws IOException {
+        long length = channel.size();
+        long windowStart = 0;
+        long lastStart = -1;
+        int count = 0;
+        while (windowStart < length) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(WINDOW_BYTES, length - windowStart));
+            int recordStart = 0;
+            try {
+                while (window.hasRemaining()) {
+                    recordStart = window.position();
+                    if (count == index) return windowStart + recordStart;
+                    ReplayVerifier.skipRecord(window);
+                    lastStart = windowStart + recordStart;
+                    count++;
+                }
+                recordStart = window.position();
+            } catch (BufferUnderflowException e) {
+                // The record runs past this window; map the next one from its start
+                if (windowStart + window.limit() >= length || recordStart == 0) {
+                    throw new IOException("Truncated record at offset " + (windowStart + recordStart));
+                }
+            }
+            windowStart += recordStart;
+        }
+        if (index >= 0 || lastStart < 0) {
+            throw new IOException("The archive has " + count + " records");
+        }
+        return lastStart;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ReplayExporter <archive> [--record N | --offset BYTES] [--levels <pack>]");
+            System.err.println("                           [--out clip.gif] [--format gif|png] [--fps 25] [--speed 1] [--threads N]");
+            System.exit(2);
+        }
+        int recordIndex = -1;
+        long offset = -1;
+        LevelPack levels = null;
+        String format = "gif";
+        String outName = null;
+        int fps = 25;
+        double speed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--record": recordIndex = Integer.parseInt(args[++i]); break;
+                case "--offset": offset = Long.parseLong(args[++i]); break;
+                case "--levels": levels = LevelPack.open(Paths.get(args[++i])); break;
+                case "--out": outName = args[++i]; break;
+                case "--format": format = args[++i]; break;
+                case "--fps": fps = Integer.parseInt(args[++i]); break;
+                case "--speed": speed = Double.parseDouble(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        boolean png = format.equals("png");
+        if (!png && !format.equals("gif")) {
+            System.err.println("Unknown format: " + format);
+            System.exit(2);
+        }
+        if (fps < 1 || (!png && fps > MAX_GIF_FPS) || speed <= 0 || threads < 1) {
+            System.err.println("Need 1 <= fps" + (png ? "" : " <= " + MAX_GIF_FPS) + ", speed > 0 and threads >= 1");
+            System.exit(2);
+        }
+        Path out = Paths.get(outName != null ? outName : png ? "frames" : "replay.gif");
+        System.setProperty("java.awt.headless", "true");  // Even where there is a display, nothing is shown
+
+        long start = System.nanoTime();
+        ReplayExporter exporter;
+        try (FileChannel channel = new RandomAccessFile(args[0], "r").getChannel()) {
+            if (offset < 0) offset = findRecord(channel, recordIndex);
+            MappedByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    Math.min(WINDOW_BYTES, channel.size() - offset));
+            ReplayVerifier.Header header = new ReplayVerifier(levels).readHeader(record, offset);
+            exporter = new ReplayExporter(header, record.slice(), png, out, fps, speed, threads);
+        }
+        long frames = exporter.export(threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long bytes = png ? -1 : Files.size(out);
+        System.out.printf("Exported %d ticks as %d frames to %s%s in %.2f s%n", exporter.totalTicks, frames, out,
+                bytes >= 0 ? " (" + bytes / 1024 + " KB)" : "", seconds);
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Records a game compactly enough to re-simulate it exactly. A game is fully
+ * determined by its settings, its Random seed and the direction in force at
+ * each tick, so only the ticks where the direction changed are stored.
+ *
+ * Format (all numbers unsigned LEB128 varints unless noted):
+ *   "SNKR" magic (4 bytes), version (1 byte), difficulty ordinal (1 byte), wrap flag (1 byte),
+ *   board width, board height, [food count, versions 2 and 3,] [level index, level checksum
+ *   (4 bytes, big-endian), version 3 only,] seed (8 bytes, big-endian),
+ *   one varint per direction change: ((ticks since previous change << 2) | direction index) + 1,
+ *   a 0 terminator, total ticks, final score.
+ *
+ * Records are self-delimiting, so an archive is simply records appended back to back.
+ */
+public class ReplayRecorder {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'R'};
+    static final int VERSION = 1;
+    static final int MULTI_FOOD_VERSION = 2;  // Written only for games with more than one food item
+    static final int LEVEL_VERSION = 3;       // Written only for games played on a level from a pack
+
+    private byte[] buffer = new byte[256];
+    private int size;
+    private int ticks;
+    private int lastChangeTick;
+    private char lastDirection;
+
+    public ReplayRecorder(SnakeEngine.Difficulty difficulty, boolean wrapAround, int boardWidth, int boardHeight, long seed) {
+        this(difficulty, wrapAround, boardWidth, boardHeight, 1, seed);
+    }
+
+    public ReplayRecorder(SnakeEngine.Difficulty difficulty, boolean wrapAround, int boardWidth, int boardHeight,
+                          int foodCount, long seed) {
+        this(difficulty, wrapAround, boardWidth, boardHeight, foodCount, null, seed);
+    }
+
+    /** Records a game on a level, which replays only with a pack holding the same level at the same index. */
+    public ReplayRecorder(SnakeEngine.Difficulty difficulty, boolean wrapAround, int boardWidth, int boardHeight,
+                          int foodCount, LevelPack.Level level, long seed) {
+        for (byte b : MAGIC) writeByte(b);
+        writeByte(level != null ? LEVEL_VERSION : foodCount == 1 ? VERSION : MULTI_FOOD_VERSION);
+        writeByte(difficulty.ordinal());
+        writeByte(wrapAround ? 1 : 0);
+        writeVarint(boardWidth);
+        writeVarint(boardHeight);
+        if (foodCount != 1 || level != null) writeVarint(foodCount);
+        if (level != null) {
+            writeVarint(level.getIndex());
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(level.getChecksum() >>> shift);
+            }
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (seed >>> shift));
+        }
+    }
+
+    private ReplayRecorder() {
+    }
+
+    /** Saves the record so far, so a suspended game can carry on recording where it stopped. */
+    void writeState(ByteBuffer out) {
+        out.putInt(size).put(buffer, 0, size);
+        out.putInt(ticks).putInt(lastChangeTick).putChar(lastDirection);
+    }
+
+    int stateBytes() {
+        return 4 + size + 10;
+    }
+
+    static ReplayRecorder readState(ByteBuffer in) {
+        ReplayRecorder recorder = new ReplayRecorder();
+        recorder.size = in.getInt();
+        recorder.buffer = new byte[Math.max(256, recorder.size * 2)];
+        in.get(recorder.buffer, 0, recorder.size);
+        recorder.ticks = in.getInt();
+        recorder.lastChangeTick = in.getInt();
+        recorder.lastDirection = in.getChar();
+        return recorder;
+    }
+
+    /** Call once before every engine step with the direction the step will use. */
+    public void recordTick(char direction) {
+        if (direction != lastDirection) {
+            writeVarint((((long) (ticks - lastChangeTick)) << 2 | directionIndex(direction)) + 1);
+            lastChangeTick = ticks;
+            lastDirection = direction;
+        }
+        ticks++;
+    }
+
+    /** Closes the record with the outcome the replay should reproduce. */
+    public void finish(int finalScore) {
+        writeVarint(0);
+        writeVarint(ticks);
+        writeVarint(finalScore);
+    }
+
+    /** Appends the finished record to an archive and returns the offset it starts at. */
+    public long appendTo(File archive) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archive, "rw")) {
+            long offset = file.length();
+            file.seek(offset);
+            file.write(buffer, 0, size);
+            return offset;
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    static int directionIndex(char direction) {
+        switch (direction) {
+            case 'U': return 0;
+            case 'D': return 1;
+            case 'L': return 2;
+            default: return 3;
+        }
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int b) {
+        if (size == buffer.length) {
+            buffer = Arrays.copyOf(buffer, size * 2);
+        }
+        buffer[size++] = (byte) b;
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Re-simulates recorded games headlessly and checks that each one ends on the
+ * recorded tick with the recorded score. Archives are memory-mapped, so even
+ * very large ones are read without copying them onto the heap.
+ *
+ *   java ReplayVerifier replays.snkr [--levels pack.snkl] [--verbose]
+ *
+ * Games played on a level need the pack they were played from.
+ */
+public class ReplayVerifier {
+    private static final long WINDOW_BYTES = 1L << 30;  // Mapped a gigabyte at a time
+
+    /** The outcome of re-simulating one record. */
+    public static class Result {
+        final long offset;
+        final int recordedTicks;
+        final int recordedScore;
+        final int replayedTicks;
+        final int replayedScore;
+        final boolean endedOnTime;
+
+        Result(long offset, int recordedTicks, int recordedScore, int replayedTicks, int replayedScore, boolean endedOnTime) {
+            this.offset = offset;
+            this.recordedTicks = recordedTicks;
+            this.recordedScore = recordedScore;
+            this.replayedTicks = replayedTicks;
+            this.replayedScore = replayedScore;
+            this.endedOnTime = endedOnTime;
+        }
+
+        public boolean isValid() {
+            return endedOnTime && replayedTicks == recordedTicks && replayedScore == recordedScore;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("@%d: recorded %d ticks / score %d, replayed %d ticks / score %d%s",
+                    offset, recordedTicks, recordedScore, replayedTicks, replayedScore,
+                    endedOnTime ? "" : " (did not end on the last tick)");
+        }
+    }
+
+    /** The settings a record starts with, which decide everything but the moves. */
+    static class Header {
+        final int difficulty;
+        final boolean wrap;
+        final int width;
+        final int height;
+        final int foodCount;
+        final LevelPack.Level level;  // Null unless the game was played on a level
+        final long seed;
+
+        Header(int difficulty, boolean wrap, int width, int height, int foodCount, LevelPack.Level level, long seed) {
+            this.difficulty = difficulty;
+            this.wrap = wrap;
+            this.width = width;
+            this.height = height;
+            this.foodCount = foodCount;
+            this.level = level;
+            this.seed = seed;
+        }
+
+        /** An engine for these settings; it starts the game as recorded once random is seeded with the seed. */
+        SnakeEngine newEngine(Random random) {
+            SnakeEngine.Difficulty preset = SnakeEngine.Difficulty.values()[difficulty];
+            return level != null
+                    ? new SnakeEngine(level, wrap, preset, foodCount, random)
+                    : new SnakeEngine(width, height, wrap, preset, foodCount, random);
+        }
+    }
+
+    // The last engine is reused when consecutive records share their settings
+    private SnakeEngine engine;
+    private Random random;
+    private int engineDifficulty = -1;
+    private boolean engineWrap;
+    private int engineWidth;
+    private int engineHeight;
+    private final LevelPack levels;
+
+    public ReplayVerifier() {
+        this(null);
+    }
+
+    public ReplayVerifier(LevelPack levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Re-simulates the record starting at the buffer's position and leaves the
+     * position just past it. The offset is only used for reporting.
+     */
+    public Result verify(ByteBuffer buffer, long offset) throws IOException {
+        SnakeEngine engine = engineFor(readHeader(buffer, offset));
+        int tick = 0;
+        boolean diedEarly = false;
+        int changeTick = 0;
+        long code;
+        while ((code = readVarint(buffer)) != 0) {
+            changeTick += (int) ((code - 1) >>> 2);
+            for (; tick < changeTick; tick++) {
+                diedEarly |= engine.isGameOver();
+                engine.step();
+            }
+            engine.setDirection(SnakePolicy.DIRECTIONS[(int) ((code - 1) & 3)]);
+        }
+        int totalTicks = (int) readVarint(buffer);
+        int finalScore = (int) readVarint(buffer);
+        for (; tick < totalTicks; tick++) {
+            diedEarly |= engine.isGameOver();
+            engine.step();
+        }
+
+        return new Result(offset, totalTicks, finalScore, tick, engine.score(), !diedEarly && engine.isGameOver());
+    }
+
+    /** Reads a record's header, leaving the buffer at its first direction change. */
+    Header readHeader(ByteBuffer buffer, long offset) throws IOException {
+        byte[] magic = new byte[ReplayRecorder.MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, ReplayRecorder.MAGIC)) {
+            throw new IOException("Not a replay record at offset " + offset);
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != ReplayRecorder.VERSION && version != ReplayRecorder.MULTI_FOOD_VERSION
+                && version != ReplayRecorder.LEVEL_VERSION) {
+            throw new IOException("Unsupported replay version " + version + " at offset " + offset);
+        }
+        int difficulty = buffer.get() & 0xFF;
+        boolean wrap = buffer.get() != 0;
+        int width = (int) readVarint(buffer);
+        int height = (int) readVarint(buffer);
+        int foodCount = version != ReplayRecorder.VERSION ? (int) readVarint(buffer) : 1;
+        LevelPack.Level level = null;
+        if (version == ReplayRecorder.LEVEL_VERSION) {
+            level = levelFor((int) readVarint(buffer), buffer.getInt(), offset);
+        }
+        return new Header(difficulty, wrap, width, height, foodCount, level, buffer.getLong());
+    }
+
+    /** Moves the buffer past the record at its position without re-simulating it or looking up its level. */
+    static void skipRecord(ByteBuffer buffer) {
+        buffer.position(buffer.position() + ReplayRecorder.MAGIC.length);
+        int version = buffer.get() & 0xFF;
+        buffer.position(buffer.position() + 2);  // Difficulty, wrap flag
+        readVarint(buffer);
+        readVarint(buffer);
+        if (version != ReplayRecorder.VERSION) readVarint(buffer);
+        if (version == ReplayRecorder.LEVEL_VERSION) {
+            readVarint(buffer);
+            buffer.getInt();
+        }
+        buffer.getLong();
+        while (readVarint(buffer) != 0) {
+            // Direction changes
+        }
+        readVarint(buffer);
+        readVarint(buffer);
+    }
+
+    private LevelPack.Level levelFor(int index, int checksum, long offset) throws IOException {
+        if (levels == null) {
+            throw new IOException("The game at offset " + offset + " was played on level " + index + "; pass --levels");
+        }
+        LevelPack.Level level = index < levels.size() ? levels.level(index) : null;
+        if (level == null || level.getChecksum() != checksum) {
+            throw new IOException("The level pack has no level " + index + " matching the game at offset " + offset);
+        }
+        return level;
+    }
+
+    private SnakeEngine engineFor(Header header) {
+        if (engine == null || header.difficulty != engineDifficulty || header.wrap != engineWrap
+                || header.level != engine.getLevel() || header.width != engineWidth
+                || header.height != engineHeight || header.foodCount != engine.getFoodCount()) {
+            random = new Random();
+            engine = header.newEngine(random);
+            engineDifficulty = header.difficulty;
+            engineWrap = header.wrap;
+            engineWidth = header.width;
+            engineHeight = header.height;
+        }
+        random.setSeed(header.seed);
+        engine.reset();
+        return engine;
+    }
+
+    static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ReplayVerifier <archive> [--levels <pack>] [--verbose]");
+            System.exit(2);
+        }
+        boolean verbose = false;
+        LevelPack levels = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--verbose": verbose = true; break;
+                case "--levels": levels = LevelPack.open(Paths.get(args[++i])); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        ReplayVerifier verifier = new ReplayVerifier(levels);
+        long records = 0;
+        long failures = 0;
+        long start = System.nanoTime();
+        try (FileChannel channel = new RandomAccessFile(args[0], "r").getChannel()) {
+            long length = channel.size();
+            long windowStart = 0;
+            while (windowStart < length) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(WINDOW_BYTES, length - windowStart));
+                int recordStart = 0;
+                try {
+                    while (window.hasRemaining()) {
+                        recordStart = window.position();
+                        Result result = verifier.verify(window, windowStart + recordStart);
+                        records++;
+                        if (!result.isValid()) failures++;
+                        if (verbose || !result.isValid()) {
+                            System.out.println((result.isValid() ? "OK   " : "FAIL ") + result);
+                        }
+                    }
+                    recordStart = window.position();
+                } catch (BufferUnderflowException e) {
+                    // The record runs past this window; map the next one from its start
+                    if (windowStart + window.limit() >= length || recordStart == 0) {
+                        throw new IOException("Truncated record at offset " + (windowStart + recordStart));
+                    }
+                }
+                windowStart += recordStart;
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%d records verified, %d failed, in %.1f ms%n", records, failures, millis);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
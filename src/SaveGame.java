@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * A suspended game: the engine's state, its random generator's state and the
+ * replay recorded so far. Restoring one carries on with exactly the moves and
+ * food the game would have had if it had never stopped.
+ *
+ * Format (big-endian):
+ *   "SNKS" magic, version (1 byte), difficulty ordinal (1 byte), wrap flag (1 byte),
+ *   board width, board height, food count, [level index or -1, level checksum, version 2 only,]
+ *   random state (8 bytes),
+ *   SnakeEngine.writeState(), ReplayRecorder.writeState(), CRC32 of everything before it.
+ *
+ * Encoding is a handful of bulk puts into one buffer, so even a snake of a
+ * hundred thousand segments saves in a few milliseconds. The file is written
+ * to a temporary file and renamed into place, so a crash mid-save leaves the
+ * previous save intact.
+ */
+public class SaveGame {
+    private static final int MAGIC = 0x534E4B53;  // "SNKS"
+    private static final int VERSION = 1;
+    private static final int LEVEL_VERSION = 2;  // Adds the level, if the game is played on one
+    private static final int HEADER_BYTES = 4 + 3 + 12 + 8 + 8;
+
+    final SnakeEngine.Difficulty difficulty;
+    final SnakeEngine engine;
+    final GameRandom random;
+    final ReplayRecorder recorder;
+
+    private SaveGame(SnakeEngine.Difficulty difficulty, SnakeEngine engine, GameRandom random, ReplayRecorder recorder) {
+        this.difficulty = difficulty;
+        this.engine = engine;
+        this.random = random;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Encodes a game into a buffer ready for write(). The engine must not be
+     * stepped while this runs; the write itself can happen on any thread.
+     */
+    static ByteBuffer encode(SnakeEngine.Difficulty difficulty, SnakeEngine engine, GameRandom random,
+                             ReplayRecorder recorder) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + engine.stateBytes() + recorder.stateBytes() + 4);
+        LevelPack.Level level = engine.getLevel();
+        buffer.putInt(MAGIC).put((byte) LEVEL_VERSION).put((byte) difficulty.ordinal())
+                .put((byte) (engine.isWrapAroundMode() ? 1 : 0))
+                .putInt(engine.getBoardWidth()).putInt(engine.getBoardHeight()).putInt(engine.getFoodCount())
+                .putInt(level == null ? -1 : level.getIndex()).putInt(level == null ? 0 : level.getChecksum())
+                .putLong(random.getState());
+        engine.writeState(buffer);
+        recorder.writeState(buffer);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    static void write(Path file, ByteBuffer encoded) throws IOException {
+        Leaderboard.writeAtomically(file, encoded);
+    }
+
+    /**
+     * Reads a saved game, or returns null if there is none. A damaged save, or
+     * one played on a level missing from the given pack, is an IOException.
+     */
+    static SaveGame read(Path file, LevelPack levels) throws IOException {
+        if (!Files.exists(file)) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.limit() < HEADER_BYTES - 8 + 4) {
+            throw new IOException("Save file " + file + " is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.limit() - 4);
+        if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue() || buffer.getInt() != MAGIC) {
+            throw new IOException("Save file " + file + " is damaged");
+        }
+        int version = buffer.get();
+        if (version != VERSION && version != LEVEL_VERSION) {
+            throw new IOException("Save file " + file + " has unknown version " + version);
+        }
+        try {
+            SnakeEngine.Difficulty difficulty = SnakeEngine.Difficulty.values()[buffer.get()];
+            boolean wrapAround = buffer.get() != 0;
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int foodCount = buffer.getInt();
+            int levelIndex = version == LEVEL_VERSION ? buffer.getInt() : -1;
+            int levelChecksum = version == LEVEL_VERSION ? buffer.getInt() : 0;
+            long randomState = buffer.getLong();
+
+            LevelPack.Level level = null;
+            if (levelIndex >= 0) {
+                level = levels != null && levelIndex < levels.size() ? levels.level(levelIndex) : null;
+                if (level == null || level.getChecksum() != levelChecksum) {
+                    throw new IOException("Save file " + file + " needs level " + levelIndex + " of its level pack");
+                }
+            }
+
+            // Building the engine spawns food, so the generator's state is restored after it
+            GameRandom random = new GameRandom(0);
+            SnakeEngine engine = level != null
+                    ? new SnakeEngine(level, wrapAround, difficulty, foodCount, random)
+                    : new SnakeEngine(width, height, wrapAround, difficulty, foodCount, random);
+            engine.readState(buffer);
+            random.setState(randomState);
+            ReplayRecorder recorder = ReplayRecorder.readState(buffer);
+            return new SaveGame(difficulty, engine, random, recorder);
+        } catch (RuntimeException e) {
+            throw new IOException("Save file " + file + " doesn't match this version of the game", e);
+        }
+    }
+}
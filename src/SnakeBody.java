@@ -0,0 +1,86 @@
+/**
+ * Snake segments packed into an int ring buffer, head first.
+ * Pushing a head and popping a tail are O(1) and allocate nothing once the
+ * buffer is big enough; it only grows (by doubling) when the snake outgrows it.
+ */
+public class SnakeBody {
+    private int[] cells;
+    private int mask;
+    private int headPos;
+    private int size;
+
+    public SnakeBody(int expectedLength) {
+        int capacity = Integer.highestOneBit(Math.max(expectedLength, 4) - 1) << 1;
+        cells = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Coordinates are stored as two signed 16-bit halves so that ghost mode can
+     * still carry the snake a little way past the walls.
+     */
+    public static int pack(int x, int y) {
+        return (y << 16) | (x & 0xFFFF);
+    }
+
+    public static int unpackX(int cell) {
+        return (short) cell;
+    }
+
+    public static int unpackY(int cell) {
+        return cell >> 16;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addHead(int x, int y) {
+        ensureCapacity();
+        headPos = (headPos + 1) & mask;
+        cells[headPos] = pack(x, y);
+        size++;
+    }
+
+    public void addTail(int x, int y) {
+        ensureCapacity();
+        cells[(headPos - size) & mask] = pack(x, y);
+        size++;
+    }
+
+    /** Drops the last segment and returns its packed cell. */
+    public int removeTail() {
+        size--;
+        return cells[(headPos - size) & mask];
+    }
+
+    /** Packed cell of segment i, where 0 is the head. */
+    public int get(int i) {
+        return cells[(headPos - i) & mask];
+    }
+
+    public int x(int i) {
+        return unpackX(get(i));
+    }
+
+    public int y(int i) {
+        return unpackY(get(i));
+    }
+
+    private void ensureCapacity() {
+        if (size < cells.length) return;
+
+        // Unroll into head-last order so the ring restarts at index 0
+        int[] grown = new int[cells.length << 1];
+        for (int i = 0; i < size; i++) {
+            grown[size - 1 - i] = get(i);
+        }
+        cells = grown;
+        mask = grown.length - 1;
+        headPos = size - 1;
+    }
+}
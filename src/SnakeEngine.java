@@ -0,0 +1,610 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The rules of the game with no Swing or AWT dependencies.
+ * App drives one of these from its timer; headless code can call step() directly.
+ * Power-ups are timed in ticks on an EffectScheduler. Their nominal durations are
+ * milliseconds, turned into ticks at the tick delay in force when they are picked up.
+ */
+public class SnakeEngine {
+    public enum FoodType {
+        NORMAL(1),
+        BONUS(3),
+        SPEED_BOOST(1),
+        SHRINK(-2),
+        GHOST(1);
+
+        final int growthValue;
+
+        FoodType(int growthValue) {
+            this.growthValue = growthValue;
+        }
+    }
+
+    public enum Difficulty {
+        EASY(150, 3),
+        NORMAL(100, 5),
+        HARD(70, 7);
+
+        final int initialGameSpeed;
+        final int speedIncrement;
+
+        Difficulty(int initialGameSpeed, int speedIncrement) {
+            this.initialGameSpeed = initialGameSpeed;
+            this.speedIncrement = speedIncrement;
+        }
+    }
+
+    public enum StepResult {
+        MOVED,
+        ATE,
+        DIED
+    }
+
+    public static final int MIN_GAME_SPEED = 40;      // Maximum speed (minimum delay)
+    public static final int BOOST_DURATION = 5000;    // 5 seconds for speed boost
+    public static final int BOOST_SPEED = 30;         // Delay for speed boost
+    public static final int GHOST_DURATION = 5000;    // 5 seconds for ghost mode
+
+    private static final int BOOST = 0;  // Effect ids on the scheduler
+    private static final int GHOST = 1;
+
+    private final int boardWidth;
+    private final int boardHeight;
+    private final boolean isWrapAroundMode;
+    private final int initialGameSpeed;
+    private final int speedIncrement;
+    private final FoodOdds foodOdds;
+    private final Random random;
+    private final LevelPack.Level level;  // Obstacles, or null for an open board
+
+    private final SnakeBody snake;
+    private final long[] occupied;  // One bit per board cell, set while a segment is on it
+    private int offBoardSegments;   // Segments outside the board (ghost mode), not in the bitmap
+    private final int[] freeCells;  // Dense list of empty cell indices, the first freeCount are live
+    private final int[] freeSlot;   // Position of each cell in freeCells
+    private int freeCount;
+    private final int[] changedCells = new int[16]; // Cells whose contents changed since clearChanges()
+    private int changedCount;
+    private boolean allChanged;
+    private char direction;
+    private int currentGameSpeed;
+    private final int[] foodCells;   // Board index of each food item, or -1 if it found no room
+    private final FoodType[] foodTypes;
+    private final int[] foodItemAt;  // Food item on each board cell, or -1
+    private int lastFoodItem;        // Food item eaten, and so respawned, by the last step that ate
+    private final EffectScheduler effects = new EffectScheduler(2, 256, this::effectExpired);
+    private boolean gameOver;
+
+    public SnakeEngine(int boardWidth, int boardHeight, boolean wrapAround, Difficulty difficulty, Random random) {
+        this(boardWidth, boardHeight, wrapAround, difficulty.initialGameSpeed, difficulty.speedIncrement, random);
+    }
+
+    public SnakeEngine(int boardWidth, int boardHeight, boolean wrapAround,
+                       int initialGameSpeed, int speedIncrement, Random random) {
+        this(boardWidth, boardHeight, wrapAround, initialGameSpeed, speedIncrement, FoodOdds.DEFAULT, random);
+    }
+
+    public SnakeEngine(int boardWidth, int boardHeight, boolean wrapAround,
+                       int initialGameSpeed, int speedIncrement, FoodOdds foodOdds, Random random) {
+        this(boardWidth, boardHeight, wrapAround, initialGameSpeed, speedIncrement, foodOdds, 1, random);
+    }
+
+    /**
+     * An engine with several food items on the board at once. Each eaten item
+     * respawns straight away; with more than one, food types are drawn with
+     * FoodOdds.sample() rather than pick().
+     */
+    public SnakeEngine(int boardWidth, int boardHeight, boolean wrapAround, Difficulty difficulty,
+                       int foodCount, Random random) {
+        this(boardWidth, boardHeight, wrapAround, difficulty.initialGameSpeed, difficulty.speedIncrement,
+                FoodOdds.DEFAULT, foodCount, random);
+    }
+
+    public SnakeEngine(int boardWidth, int boardHeight, boolean wrapAround, int initialGameSpeed,
+                       int speedIncrement, FoodOdds foodOdds, int foodCount, Random random) {
+        this(null, boardWidth, boardHeight, wrapAround, initialGameSpeed, speedIncrement, foodOdds, foodCount, random);
+    }
+
+    /**
+     * An engine on a level's board. The snake starts on the level's start cell,
+     * food never spawns on its walls, and running into one ends the game even
+     * in ghost mode, which only carries the snake past the board's edges.
+     */
+    public SnakeEngine(LevelPack.Level level, boolean wrapAround, Difficulty difficulty, int foodCount, Random random) {
+        this(level, level.getWidth(), level.getHeight(), wrapAround, difficulty.initialGameSpeed,
+                difficulty.speedIncrement, FoodOdds.DEFAULT, foodCount, random);
+    }
+
+    private SnakeEngine(LevelPack.Level level, int boardWidth, int boardHeight, boolean wrapAround, int initialGameSpeed,
+                        int speedIncrement, FoodOdds foodOdds, int foodCount, Random random) {
+        this.level = level;
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.isWrapAroundMode = wrapAround;
+        this.initialGameSpeed = initialGameSpeed;
+        this.speedIncrement = speedIncrement;
+        this.foodOdds = foodOdds;
+        this.random = random;
+        this.snake = new SnakeBody(boardWidth * boardHeight);
+        this.occupied = new long[(boardWidth * boardHeight + 63) >>> 6];
+        this.freeCells = new int[boardWidth * boardHeight];
+        this.freeSlot = new int[boardWidth * boardHeight];
+        this.foodCells = new int[foodCount];
+        this.foodTypes = new FoodType[foodCount];
+        this.foodItemAt = new int[boardWidth * boardHeight];
+        Arrays.fill(foodCells, -1);
+        Arrays.fill(foodItemAt, -1);
+        reset();
+    }
+
+    /** Puts a length-1 snake in the middle of the board heading right, with fresh food. */
+    public void reset() {
+        clearBoard();
+        if (level != null) {
+            pushHead(level.getStartX(), level.getStartY());
+        } else {
+            pushHead(boardWidth / 2, boardHeight / 2);
+        }
+        direction = 'R';
+        effects.clear();
+        gameOver = false;
+        currentGameSpeed = initialGameSpeed;
+        spawnAllFood();
+    }
+
+    /**
+     * Replaces the snake with the given segments (index 0 is the head) and places
+     * fresh food. Used by benchmarks and tools that need a particular board.
+     */
+    void loadSnake(int[] xs, int[] ys, int length, char direction) {
+        clearBoard();
+        for (int i = length - 1; i >= 0; i--) {
+            if (isSnakeAt(xs[i], ys[i])) {
+                throw new IllegalArgumentException("Segment " + i + " overlaps the snake at " + xs[i] + "," + ys[i]);
+            }
+            pushHead(xs[i], ys[i]);
+        }
+        this.direction = direction;
+        gameOver = false;
+        spawnAllFood();
+    }
+
+    /** Bytes writeState() needs for the game as it stands. */
+    int stateBytes() {
+        int cellBytes = freeCells.length <= 0x10000 ? 2 : 4;
+        return 8 * 4 + 3 + foodCells.length * 5 + 4 + snake.size() * 4 + 4 + freeCount * cellBytes;
+    }
+
+    /**
+     * Writes everything the game depends on apart from its Random and the
+     * settings it was built with: the body, direction, speed, power-up timers,
+     * food, and the order of the free-cell list, which decides where food lands.
+     */
+    void writeState(ByteBuffer out) {
+        out.putInt(boardWidth).putInt(boardHeight).put((byte) (isWrapAroundMode ? 1 : 0)).putInt(foodCells.length);
+        out.put((byte) direction).put((byte) (gameOver ? 1 : 0)).putInt(currentGameSpeed)
+                .putInt(effects.remaining(BOOST)).putInt(effects.duration(BOOST))
+                .putInt(effects.remaining(GHOST)).putInt(effects.duration(GHOST));
+        for (int item = 0; item < foodCells.length; item++) {
+            out.putInt(foodCells[item]).put((byte) (foodTypes[item] == null ? -1 : foodTypes[item].ordinal()));
+        }
+        out.putInt(snake.size());
+        for (int i = 0; i < snake.size(); i++) {
+            out.putInt(snake.get(i));
+        }
+        out.putInt(freeCount);
+        boolean shortCells = freeCells.length <= 0x10000;
+        for (int i = 0; i < freeCount; i++) {
+            if (shortCells) out.putShort((short) freeCells[i]);
+            else out.putInt(freeCells[i]);
+        }
+    }
+
+    /** Restores a game written by writeState() on an engine built with the same settings. */
+    void readState(ByteBuffer in) {
+        if (in.getInt() != boardWidth || in.getInt() != boardHeight
+                || (in.get() != 0) != isWrapAroundMode || in.getInt() != foodCells.length) {
+            throw new IllegalArgumentException("Saved game has different settings");
+        }
+        char savedDirection = (char) in.get();
+        boolean savedGameOver = in.get() != 0;
+        int savedSpeed = in.getInt();
+        int boostRemaining = in.getInt();
+        int boostDuration = in.getInt();
+        int ghostRemaining = in.getInt();
+        int ghostDuration = in.getInt();
+
+        clearBoard();
+        Arrays.fill(foodItemAt, -1);
+        for (int item = 0; item < foodCells.length; item++) {
+            foodCells[item] = in.getInt();
+            int type = in.get();
+            foodTypes[item] = type < 0 ? null : FoodType.values()[type];
+            if (foodCells[item] >= 0) foodItemAt[foodCells[item]] = item;
+        }
+        int length = in.getInt();
+        for (int i = 0; i < length; i++) {
+            int cell = in.getInt();
+            int x = SnakeBody.unpackX(cell);
+            int y = SnakeBody.unpackY(cell);
+            if (isOnBoard(x, y)) {
+                int index = y * boardWidth + x;
+                occupied[index >>> 6] |= 1L << index;
+            } else if (i == 0 || snake.get(i - 1) != cell) {
+                offBoardSegments++; // Copies stacked on the tail count once, as in popTail()
+            }
+            snake.addTail(x, y);
+        }
+        freeCount = in.getInt();
+        boolean shortCells = freeCells.length <= 0x10000;
+        for (int i = 0; i < freeCount; i++) {
+            int cell = shortCells ? in.getShort() & 0xFFFF : in.getInt();
+            freeCells[i] = cell;
+            freeSlot[cell] = i;
+        }
+
+        direction = savedDirection;
+        gameOver = savedGameOver;
+        currentGameSpeed = savedSpeed;
+        effects.clear();
+        if (boostRemaining > 0) effects.resume(BOOST, boostRemaining, boostDuration);
+        if (ghostRemaining > 0) effects.resume(GHOST, ghostRemaining, ghostDuration);
+        allChanged = true;
+    }
+
+    private void clearBoard() {
+        snake.clear();
+        Arrays.fill(occupied, 0L);
+        offBoardSegments = 0;
+        freeCount = 0;
+        for (int i = 0; i < freeCells.length; i++) {
+            if (level != null && level.isWall(i)) continue; // Walls never join the free list
+            freeCells[freeCount] = i;
+            freeSlot[i] = freeCount++;
+        }
+        allChanged = true;
+    }
+
+    /**
+     * Turns the snake (ignoring reversals, as the keyboard handler always has)
+     * and advances the game by one tick.
+     */
+    public StepResult step(char newDirection) {
+        setDirection(newDirection);
+        return step();
+    }
+
+    /** Advances the game by one tick in the current direction. */
+    public StepResult step() {
+        if (gameOver) return StepResult.DIED;
+
+        // Power-ups wear off after the tick that used them up
+        effects.advance();
+
+        int next = nextCell(direction);
+        int x = SnakeBody.unpackX(next);
+        int y = SnakeBody.unpackY(next);
+
+        if (collides(x, y)) {
+            gameOver = true;
+            return StepResult.DIED;
+        }
+
+        // Check if food is eaten; one lookup however much food is out
+        int item = isOnBoard(x, y) ? foodItemAt[y * boardWidth + x] : -1;
+        if (item >= 0) {
+            pushHead(x, y);
+            handleFoodEaten(foodTypes[item]);
+            spawnFood(item);
+            lastFoodItem = item;
+            return StepResult.ATE;
+        }
+        // Pop first so a head following the tail finds its cell already cleared
+        popTail();
+        pushHead(x, y);
+        return StepResult.MOVED;
+    }
+
+    /** Where the head would go next in the given direction, as a packed cell. */
+    private int nextCell(char direction) {
+        int x = snake.x(0);
+        int y = snake.y(0);
+
+        switch (direction) {
+            case 'U': y--; break;
+            case 'D': y++; break;
+            case 'L': x--; break;
+            case 'R': x++; break;
+        }
+
+        // Handle wrap-around mode
+        if (isWrapAroundMode) {
+            if (x < 0) x = boardWidth - 1;
+            else if (x >= boardWidth) x = 0;
+            if (y < 0) y = boardHeight - 1;
+            else if (y >= boardHeight) y = 0;
+        }
+        return SnakeBody.pack(x, y);
+    }
+
+    private boolean collides(int x, int y) {
+        // 1. Collision with self. The tail cell is safe when the tail is about to move off it.
+        if (isSnakeAt(x, y) && !tailVacates(x, y)) {
+            return true;
+        }
+
+        // 2. Collision with the level's walls, which ghost mode doesn't pass through
+        if (isWall(x, y)) {
+            return true;
+        }
+
+        // 3. Collision with the board's edges (only if not in wrap-around mode)
+        return !isWrapAroundMode && !isGhostMode() && !isOnBoard(x, y);
+    }
+
+    /**
+     * True if moving in the given direction on the next tick would end the game.
+     * Does not account for power-ups that expire on that tick.
+     */
+    public boolean wouldCollide(char direction) {
+        int next = nextCell(direction);
+        return collides(SnakeBody.unpackX(next), SnakeBody.unpackY(next));
+    }
+
+    private void handleFoodEaten(FoodType eatenFoodType) {
+
+        // 1. Handle snake growth
+        // The snake automatically grows by 1 because we don't remove the tail.
+        // For bonus growth, add extra segments to the tail.
+        if (eatenFoodType.growthValue > 1) {
+            int tailX = snake.x(snake.size() - 1);
+            int tailY = snake.y(snake.size() - 1);
+            for (int i = 0; i < eatenFoodType.growthValue - 1; i++) {
+                snake.addTail(tailX, tailY); // Stacks on the tail cell, which is already marked
+            }
+        } else if (eatenFoodType.growthValue < 0) {
+            // Shrink the snake
+            int shrinkAmount = Math.abs(eatenFoodType.growthValue);
+            // We also need to counteract the implicit growth of 1 from not removing the tail.
+            int totalToRemove = shrinkAmount + 1;
+            for (int i = 0; i < totalToRemove && snake.size() > 3; i++) {
+                popTail();
+            }
+        }
+
+        // 2. Handle speed boost
+        if (eatenFoodType == FoodType.SPEED_BOOST && !isBoosted()) {
+            effects.schedule(BOOST, ticksFor(BOOST_DURATION, BOOST_SPEED));
+        }
+
+        // Increase permanent speed only if not boosted
+        if (!isBoosted() && currentGameSpeed > MIN_GAME_SPEED && speedIncrement > 0) {
+            currentGameSpeed -= speedIncrement;
+        }
+
+        // 3. Handle Ghost Mode, timed at the speed the snake now moves at
+        if (eatenFoodType == FoodType.GHOST && !isGhostMode()) {
+            effects.schedule(GHOST, ticksFor(GHOST_DURATION, tickDelay()));
+            allChanged = true;
+        }
+    }
+
+    private void spawnAllFood() {
+        for (int item = 0; item < foodCells.length; item++) {
+            if (foodCells[item] >= 0) foodItemAt[foodCells[item]] = -1;
+            foodCells[item] = -1;
+        }
+        for (int item = 0; item < foodCells.length; item++) {
+            spawnFood(item);
+        }
+    }
+
+    /** Moves a food item to a random empty cell, with a new type. */
+    private void spawnFood(int item) {
+        if (foodCells[item] >= 0) foodItemAt[foodCells[item]] = -1;
+        int cell = randomFoodCell();
+        if (cell < 0) {
+            // The snake (and other food) fills the board, so there is nowhere left to put it
+            foodCells[item] = -1;
+            foodTypes[item] = null;
+            return;
+        }
+        foodCells[item] = cell;
+        foodItemAt[cell] = item;
+        // A single food keeps pick(), so its games replay exactly as they always have
+        foodTypes[item] = foodCells.length == 1
+                ? foodOdds.pick(snake.size(), isWrapAroundMode, random.nextDouble())
+                : foodOdds.sample(snake.size(), isWrapAroundMode, random.nextDouble());
+        markChanged(cell % boardWidth, cell / boardWidth);
+    }
+
+    /** A random cell with neither snake nor food on it, or -1 if there is none. */
+    private int randomFoodCell() {
+        if (freeCount == 0) return -1;
+        // Retries only happen when the pick lands on other food, so a single food never retries
+        for (int attempt = 0; attempt < 64; attempt++) {
+            int cell = freeCells[random.nextInt(freeCount)];
+            if (foodItemAt[cell] < 0) return cell;
+        }
+        int start = random.nextInt(freeCount);
+        for (int k = 0; k < freeCount; k++) {
+            int cell = freeCells[(start + k) % freeCount];
+            if (foodItemAt[cell] < 0) return cell;
+        }
+        return -1;
+    }
+
+    public boolean isSnakeAt(int x, int y) {
+        if (isOnBoard(x, y)) {
+            int index = y * boardWidth + x;
+            return (occupied[index >>> 6] & (1L << index)) != 0;
+        }
+        if (offBoardSegments == 0) return false;
+
+        // Only reachable while ghost mode has carried the snake past a wall
+        int cell = SnakeBody.pack(x, y);
+        for (int i = 0; i < snake.size(); i++) {
+            if (snake.get(i) == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** True if (x, y) is the tail and the next non-eating move will leave it empty. */
+    private boolean tailVacates(int x, int y) {
+        int size = snake.size();
+        int tail = snake.get(size - 1);
+        return tail == SnakeBody.pack(x, y) && size > 1 && snake.get(size - 2) != tail;
+    }
+
+    private void pushHead(int x, int y) {
+        if (snake.size() > 0) {
+            markChanged(snake.x(0), snake.y(0)); // The old head becomes body
+        }
+        markChanged(x, y);
+        snake.addHead(x, y);
+        if (isOnBoard(x, y)) {
+            int index = y * boardWidth + x;
+            occupied[index >>> 6] |= 1L << index;
+            // Swap-remove from the free list
+            int slot = freeSlot[index];
+            int last = freeCells[--freeCount];
+            freeCells[slot] = last;
+            freeSlot[last] = slot;
+        } else {
+            offBoardSegments++;
+        }
+    }
+
+    private void popTail() {
+        int cell = snake.removeTail();
+        // Bonus growth stacks copies of the tail on one cell; keep it marked until the last one leaves
+        if (snake.size() > 0 && snake.get(snake.size() - 1) == cell) return;
+
+        int x = SnakeBody.unpackX(cell);
+        int y = SnakeBody.unpackY(cell);
+        markChanged(x, y);
+        if (isOnBoard(x, y)) {
+            int index = y * boardWidth + x;
+            occupied[index >>> 6] &= ~(1L << index);
+            freeCells[freeCount] = index;
+            freeSlot[index] = freeCount++;
+        } else {
+            offBoardSegments--;
+        }
+    }
+
+    private void markChanged(int x, int y) {
+        if (!isOnBoard(x, y) || allChanged) return;
+        if (changedCount == changedCells.length) {
+            allChanged = true;
+        } else {
+            changedCells[changedCount++] = y * boardWidth + x;
+        }
+    }
+
+    /**
+     * Changed-cell tracking for incremental renderers. Cells are board indices
+     * (y * width + x); when hasAllChanged() is true the list is incomplete and
+     * the whole board should be redrawn.
+     */
+    public int getChangedCount() { return changedCount; }
+    public int getChangedCell(int i) { return changedCells[i]; }
+    public boolean hasAllChanged() { return allChanged; }
+
+    public void clearChanges() {
+        changedCount = 0;
+        allChanged = false;
+    }
+
+    public boolean isOnBoard(int x, int y) {
+        return x >= 0 && x < boardWidth && y >= 0 && y < boardHeight;
+    }
+
+    /** True if (x, y) is one of the level's walls. */
+    public boolean isWall(int x, int y) {
+        return level != null && isOnBoard(x, y) && level.isWall(y * boardWidth + x);
+    }
+
+    /**
+     * Steps from (x, y) to the nearest wall, counting the board's edges unless
+     * it wraps, capped at LevelPack.MAX_DISTANCE. Read from the level's
+     * precomputed field; off the board it is 0, and with no level it is the cap.
+     */
+    public int wallDistance(int x, int y) {
+        if (level == null) return LevelPack.MAX_DISTANCE;
+        if (!isOnBoard(x, y)) return 0;
+        return level.wallDistance(y * boardWidth + x, isWrapAroundMode);
+    }
+
+    /** Changes direction unless it would reverse the snake onto itself. */
+    public void setDirection(char newDirection) {
+        switch (newDirection) {
+            case 'U': if (direction != 'D') direction = 'U'; break;
+            case 'D': if (direction != 'U') direction = 'D'; break;
+            case 'L': if (direction != 'R') direction = 'L'; break;
+            case 'R': if (direction != 'L') direction = 'R'; break;
+        }
+    }
+
+    /** Ticks that last at least the given number of milliseconds at the given tick delay. */
+    private static int ticksFor(int millis, int delay) {
+        return (millis + delay - 1) / delay;
+    }
+
+    private void effectExpired(int effect) {
+        if (effect == GHOST) allChanged = true; // The whole body turns opaque again
+    }
+
+    /** Delay in milliseconds until the next tick, taking the speed boost into account. */
+    public int tickDelay() {
+        return isBoosted() ? BOOST_SPEED : currentGameSpeed;
+    }
+
+    public LevelPack.Level getLevel() { return level; }
+    public int getBoardWidth() { return boardWidth; }
+    public int getBoardHeight() { return boardHeight; }
+    public boolean isWrapAroundMode() { return isWrapAroundMode; }
+    public char getDirection() { return direction; }
+    public int getCurrentGameSpeed() { return currentGameSpeed; }
+    public boolean isGameOver() { return gameOver; }
+    public boolean isBoosted() { return effects.isActive(BOOST); }
+    public boolean isGhostMode() { return effects.isActive(GHOST); }
+    /** Ticks left on the speed boost, or 0. */
+    public int getBoostRemaining() { return effects.remaining(BOOST); }
+    /** Ticks left in ghost mode, or 0. */
+    public int getGhostRemaining() { return effects.remaining(GHOST); }
+    /** Ticks the current speed boost started with. */
+    public int getBoostDuration() { return effects.duration(BOOST); }
+    /** Ticks the current ghost mode started with. */
+    public int getGhostDuration() { return effects.duration(GHOST); }
+
+    public int length() { return snake.size(); }
+    public int score() { return snake.size() - 1; }
+    public int segmentX(int i) { return snake.x(i); }
+    public int segmentY(int i) { return snake.y(i); }
+
+    public int getFoodX() { return getFoodX(0); }
+    public int getFoodY() { return getFoodY(0); }
+    /** The food on the board, or null once the snake has filled every cell. */
+    public FoodType getFoodType() { return foodTypes[0]; }
+
+    public int getFoodCount() { return foodCells.length; }
+    /** The food item the last step that returned ATE ate; it has already respawned elsewhere. */
+    public int getLastFoodItem() { return lastFoodItem; }
+    public int getFoodX(int item) { return foodCells[item] < 0 ? -1 : foodCells[item] % boardWidth; }
+    public int getFoodY(int item) { return foodCells[item] < 0 ? -1 : foodCells[item] / boardWidth; }
+    /** The type of a food item, or null if it found no room on the board. */
+    public FoodType getFoodType(int item) { return foodTypes[item]; }
+
+    /** The type of the food on a cell, or null if there is none. */
+    public FoodType getFoodTypeAt(int x, int y) {
+        if (!isOnBoard(x, y)) return null;
+        int item = foodItemAt[y * boardWidth + x];
+        return item < 0 ? null : foodTypes[item];
+    }
+}
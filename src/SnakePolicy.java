@@ -0,0 +1,76 @@
+/**
+ * Chooses the snake's direction for the next tick. Used to play games without
+ * a keyboard, e.g. in batch simulations.
+ */
+public interface SnakePolicy {
+    char[] DIRECTIONS = {'U', 'D', 'L', 'R'};
+
+    char choose(SnakeEngine engine);
+
+    /**
+     * Heads for the nearest food by the shortest way (through walls in wrap-around mode),
+     * never taking a move that would end the game if another is available.
+     * On a level, equally short moves are settled by the one leading further
+     * from the walls.
+     */
+    SnakePolicy GREEDY = engine -> {
+        int headX = engine.segmentX(0);
+        int headY = engine.segmentY(0);
+        char current = engine.getDirection();
+        char best = current;
+        int bestDistance = Integer.MAX_VALUE;
+        int bestClearance = -1;
+        boolean bestSafe = false;
+        boolean onLevel = engine.getLevel() != null;
+
+        // Try carrying on first so ties keep the snake going straight
+        for (int i = -1; i < DIRECTIONS.length; i++) {
+            char direction = (i < 0) ? current : DIRECTIONS[i];
+            if ((i >= 0 && direction == current) || isReverse(current, direction)) continue;
+            boolean safe = !engine.wouldCollide(direction);
+            if (bestSafe && !safe) continue;
+
+            int x = headX + (direction == 'L' ? -1 : direction == 'R' ? 1 : 0);
+            int y = headY + (direction == 'U' ? -1 : direction == 'D' ? 1 : 0);
+            int distance = distance(engine, x, y);
+            int clearance = onLevel ? engine.wallDistance(wrapX(engine, x), wrapY(engine, y)) : 0;
+            if ((safe && !bestSafe) || distance < bestDistance
+                    || (distance == bestDistance && safe == bestSafe && clearance > bestClearance)) {
+                best = direction;
+                bestDistance = distance;
+                bestClearance = clearance;
+                bestSafe = safe;
+            }
+        }
+        return best;
+    };
+
+    static boolean isReverse(char from, char to) {
+        return (from == 'U' && to == 'D') || (from == 'D' && to == 'U')
+                || (from == 'L' && to == 'R') || (from == 'R' && to == 'L');
+    }
+
+    static int wrapX(SnakeEngine engine, int x) {
+        return engine.isWrapAroundMode() ? (x + engine.getBoardWidth()) % engine.getBoardWidth() : x;
+    }
+
+    static int wrapY(SnakeEngine engine, int y) {
+        return engine.isWrapAroundMode() ? (y + engine.getBoardHeight()) % engine.getBoardHeight() : y;
+    }
+
+    /** Steps from (x, y) to the nearest food item, or 0 if there is no food on the board. */
+    static int distance(SnakeEngine engine, int x, int y) {
+        int nearest = Integer.MAX_VALUE;
+        for (int item = 0; item < engine.getFoodCount(); item++) {
+            if (engine.getFoodType(item) == null) continue;
+            int dx = Math.abs(engine.getFoodX(item) - x);
+            int dy = Math.abs(engine.getFoodY(item) - y);
+            if (engine.isWrapAroundMode()) {
+                dx = Math.min(dx, engine.getBoardWidth() - dx);
+                dy = Math.min(dy, engine.getBoardHeight() - dy);
+            }
+            nearest = Math.min(nearest, dx + dy);
+        }
+        return nearest == Integer.MAX_VALUE ? 0 : nearest;
+    }
+}
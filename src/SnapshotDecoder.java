@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Rebuilds a spectated game from SnapshotEncoder's keyframes and deltas.
+ * Deltas that arrive before the first keyframe, or that the last keyframe
+ * already covers, are ignored.
+ */
+public class SnapshotDecoder {
+    private final SnakeBody snake = new SnakeBody(64);
+    private boolean synced;
+    private int tick;
+    private int width;
+    private int height;
+    private int flags;
+    private char direction;
+    private int[] foodX = new int[0];
+    private int[] foodY = new int[0];
+    private SnakeEngine.FoodType[] foodTypes = new SnakeEngine.FoodType[0];
+    private int boostRemaining;
+    private int ghostRemaining;
+    private int speed;
+
+    /**
+     * Applies every complete message in the buffer and leaves its position at
+     * the start of the first incomplete one, ready for compact().
+     */
+    public void apply(ByteBuffer in) throws IOException {
+        while (in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position())) {
+            int length = in.getInt();
+            int end = in.position() + length;
+            byte type = in.get();
+            if (type == SnapshotEncoder.KEYFRAME) {
+                applyKeyframe(in);
+            } else if (type == SnapshotEncoder.DELTA) {
+                applyDelta(in);
+            } else {
+                throw new IOException("Unknown snapshot message " + type);
+            }
+            in.position(end);
+        }
+    }
+
+    private void applyKeyframe(ByteBuffer in) {
+        tick = in.getInt();
+        width = in.getShort();
+        height = in.getShort();
+        flags = in.get();
+        direction = (char) in.get();
+        int foodCount = in.getShort();
+        if (foodTypes.length != foodCount) {
+            foodX = new int[foodCount];
+            foodY = new int[foodCount];
+            foodTypes = new SnakeEngine.FoodType[foodCount];
+        }
+        for (int item = 0; item < foodCount; item++) {
+            readFood(in, item);
+        }
+        boostRemaining = in.getInt();
+        ghostRemaining = in.getInt();
+        speed = in.getShort();
+        int length = in.getInt();
+        snake.clear();
+        for (int i = 0; i < length; i++) {
+            snake.addTail(in.getShort(), in.getShort());
+        }
+        synced = true;
+    }
+
+    private void applyDelta(ByteBuffer in) {
+        int deltaTick = in.getInt();
+        if (!synced || deltaTick <= tick) return;
+        tick = deltaTick;
+        flags = in.get();
+        direction = (char) in.get();
+        if ((flags & SnapshotEncoder.HEAD_MOVED) != 0) {
+            snake.addHead(in.getShort(), in.getShort());
+        }
+        int tailDelta = in.getShort();
+        for (int i = 0; i < tailDelta; i++) {
+            snake.removeTail();
+        }
+        if (tailDelta < 0) {
+            int tail = snake.get(snake.size() - 1);
+            for (int i = 0; i < -tailDelta; i++) {
+                snake.addTail(SnakeBody.unpackX(tail), SnakeBody.unpackY(tail));
+            }
+        }
+        if ((flags & SnapshotEncoder.FOOD_CHANGED) != 0) {
+            for (int changes = in.getShort(); changes > 0; changes--) {
+                readFood(in, in.getShort());
+            }
+        }
+        boostRemaining = (flags & SnapshotEncoder.BOOSTED) != 0 ? in.getShort() : 0;
+        ghostRemaining = (flags & SnapshotEncoder.GHOST) != 0 ? in.getShort() : 0;
+        if ((flags & SnapshotEncoder.SPEED_CHANGED) != 0) speed = in.getShort();
+    }
+
+    private void readFood(ByteBuffer in, int item) {
+        foodX[item] = in.getShort();
+        foodY[item] = in.getShort();
+        int type = in.get();
+        foodTypes[item] = type < 0 ? null : SnakeEngine.FoodType.values()[type];
+    }
+
+    public boolean isSynced() { return synced; }
+    public int getTick() { return tick; }
+    public int getBoardWidth() { return width; }
+    public int getBoardHeight() { return height; }
+    public boolean isWrapAroundMode() { return (flags & SnapshotEncoder.WRAP_AROUND) != 0; }
+    public boolean isGameOver() { return (flags & SnapshotEncoder.GAME_OVER) != 0; }
+    public char getDirection() { return direction; }
+    public int getCurrentGameSpeed() { return speed; }
+    public int getBoostRemaining() { return boostRemaining; }
+    public int getGhostRemaining() { return ghostRemaining; }
+    public int length() { return snake.size(); }
+    public int score() { return snake.size() - 1; }
+    public int segmentX(int i) { return snake.x(i); }
+    public int segmentY(int i) { return snake.y(i); }
+    public int getFoodX() { return getFoodX(0); }
+    public int getFoodY() { return getFoodY(0); }
+    public SnakeEngine.FoodType getFoodType() { return getFoodType(0); }
+    public int getFoodCount() { return foodTypes.length; }
+    public int getFoodX(int item) { return foodX[item]; }
+    public int getFoodY(int item) { return foodY[item]; }
+    /** The type of a food item, or null if it found no room on the board. */
+    public SnakeEngine.FoodType getFoodType(int item) { return foodTypes[item]; }
+}
@@ -0,0 +1,174 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes a SnakeEngine for spectators as one keyframe followed by a small
+ * delta per tick. A delta carries only what a tick can change: the new head,
+ * how many tail segments went (or were stacked on by bonus food), the food
+ * items that moved, the direction and power-up state. Its size doesn't depend
+ * on the snake's length. SnapshotDecoder rebuilds the state on the other end.
+ *
+ * Every message is a 4-byte length followed by the payload:
+ *   Keyframe: 'K' tick(int) width(short) height(short) flags direction
+ *             food-count(short) then x(short) y(short) type per food item
+ *             boost-ticks(int) ghost-ticks(int) speed(short)
+ *             length(int) then x(short) y(short) per segment, head first
+ *   Delta:    'D' tick(int) flags direction [head-x(short) head-y(short)] tail-delta(short)
+ *             [changes(short) then item(short) x(short) y(short) type per changed food item]
+ *             [boost-ticks(short)] [ghost-ticks(short)] [speed(short)]
+ * Bracketed fields are present only when the matching flag is set. A positive
+ * tail delta removes that many tail segments; a negative one stacks copies on
+ * the tail. A food item with no room on the board has x and y of -1 and type -1.
+ *
+ * Buffers are direct and reused, so encoding a tick allocates nothing.
+ */
+public class SnapshotEncoder {
+    static final byte KEYFRAME = 'K';
+    static final byte DELTA = 'D';
+
+    static final int GAME_OVER = 1;
+    static final int WRAP_AROUND = 1 << 1;
+    static final int BOOSTED = 1 << 2;
+    static final int GHOST = 1 << 3;
+    static final int HEAD_MOVED = 1 << 4;
+    static final int FOOD_CHANGED = 1 << 5;
+    static final int SPEED_CHANGED = 1 << 6;
+
+    private static final int DELTA_HEADER_BYTES = 4 + 1 + 4 + 2 + 4 + 2 + 2 + 2 + 2 + 2;
+    private static final int DELTA_FOOD_BYTES = 7;
+    private static final int KEYFRAME_HEADER_BYTES = 4 + 1 + 4 + 2 + 2 + 2 + 2 + 4 + 4 + 2 + 4;
+    private static final int KEYFRAME_FOOD_BYTES = 5;
+
+    private ByteBuffer delta = ByteBuffer.allocateDirect(DELTA_HEADER_BYTES + DELTA_FOOD_BYTES);
+    private ByteBuffer keyframe = ByteBuffer.allocateDirect(KEYFRAME_HEADER_BYTES + KEYFRAME_FOOD_BYTES + 4 * 64);
+    private int tick;
+
+    // The state the last message described
+    private int lastHead;
+    private int lastLength;
+    private int[] lastFoodX = new int[0];
+    private int[] lastFoodY = new int[0];
+    private SnakeEngine.FoodType[] lastFoodTypes = new SnakeEngine.FoodType[0];
+    private int lastSpeed;
+
+    /**
+     * Encodes the engine's full state and makes it the base for the next delta.
+     * The returned buffer is ready to read and is overwritten by the next call.
+     */
+    public ByteBuffer encodeKeyframe(SnakeEngine engine) {
+        int length = engine.length();
+        int needed = KEYFRAME_HEADER_BYTES + KEYFRAME_FOOD_BYTES * engine.getFoodCount() + 4 * length;
+        if (keyframe.capacity() < needed) {
+            keyframe = ByteBuffer.allocateDirect(Integer.highestOneBit(needed) << 1);
+        }
+        ByteBuffer out = keyframe;
+        out.clear();
+        out.putInt(needed - 4).put(KEYFRAME).putInt(tick)
+                .putShort((short) engine.getBoardWidth()).putShort((short) engine.getBoardHeight())
+                .put((byte) flags(engine)).put((byte) engine.getDirection())
+                .putShort((short) engine.getFoodCount());
+        for (int item = 0; item < engine.getFoodCount(); item++) {
+            putFood(out, engine, item);
+        }
+        out.putInt(engine.getBoostRemaining()).putInt(engine.getGhostRemaining())
+                .putShort((short) engine.getCurrentGameSpeed()).putInt(length);
+        for (int i = 0; i < length; i++) {
+            out.putShort((short) engine.segmentX(i)).putShort((short) engine.segmentY(i));
+        }
+        out.flip();
+        remember(engine);
+        return out;
+    }
+
+    /**
+     * Encodes what changed since the last keyframe or delta. Call once per tick,
+     * after the engine has stepped. The returned buffer is ready to read and is
+     * overwritten by the next call. Food items are compared one by one, which
+     * is a few array reads each even with the board full of food.
+     */
+    public ByteBuffer encodeDelta(SnakeEngine engine) {
+        tick++;
+        int head = SnakeBody.pack(engine.segmentX(0), engine.segmentY(0));
+        int length = engine.length();
+        boolean headMoved = head != lastHead;
+        if (lastFoodTypes.length != engine.getFoodCount()) {
+            resizeFood(engine.getFoodCount());  // A new engine: every item goes out as changed
+        }
+        int needed = DELTA_HEADER_BYTES + DELTA_FOOD_BYTES * engine.getFoodCount();
+        if (delta.capacity() < needed) {
+            delta = ByteBuffer.allocateDirect(needed);
+        }
+        int foodChanges = 0;
+        for (int item = 0; item < lastFoodTypes.length; item++) {
+            if (foodChanged(engine, item)) foodChanges++;
+        }
+        boolean foodChanged = foodChanges > 0;
+        boolean speedChanged = engine.getCurrentGameSpeed() != lastSpeed;
+        int flags = flags(engine) | (headMoved ? HEAD_MOVED : 0) | (foodChanged ? FOOD_CHANGED : 0)
+                | (speedChanged ? SPEED_CHANGED : 0);
+
+        ByteBuffer out = delta;
+        out.clear();
+        out.putInt(0).put(DELTA).putInt(tick).put((byte) flags).put((byte) engine.getDirection());
+        if (headMoved) {
+            out.putShort((short) engine.segmentX(0)).putShort((short) engine.segmentY(0));
+        }
+        out.putShort((short) (lastLength + (headMoved ? 1 : 0) - length));
+        if (foodChanged) {
+            out.putShort((short) foodChanges);
+            for (int item = 0; item < lastFoodTypes.length; item++) {
+                if (foodChanged(engine, item)) {
+                    out.putShort((short) item);
+                    putFood(out, engine, item);
+                }
+            }
+        }
+        if (engine.isBoosted()) out.putShort((short) engine.getBoostRemaining());
+        if (engine.isGhostMode()) out.putShort((short) engine.getGhostRemaining());
+        if (speedChanged) out.putShort((short) engine.getCurrentGameSpeed());
+        out.putInt(0, out.position() - 4);
+        out.flip();
+        remember(engine);
+        return out;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    private static int flags(SnakeEngine engine) {
+        return (engine.isGameOver() ? GAME_OVER : 0) | (engine.isWrapAroundMode() ? WRAP_AROUND : 0)
+                | (engine.isBoosted() ? BOOSTED : 0) | (engine.isGhostMode() ? GHOST : 0);
+    }
+
+    private static void putFood(ByteBuffer out, SnakeEngine engine, int item) {
+        SnakeEngine.FoodType type = engine.getFoodType(item);
+        out.putShort((short) engine.getFoodX(item)).putShort((short) engine.getFoodY(item))
+                .put((byte) (type == null ? -1 : type.ordinal()));
+    }
+
+    private boolean foodChanged(SnakeEngine engine, int item) {
+        return engine.getFoodX(item) != lastFoodX[item] || engine.getFoodY(item) != lastFoodY[item]
+                || engine.getFoodType(item) != lastFoodTypes[item];
+    }
+
+    /** Starts tracking a new number of food items, none of which the other end has seen yet. */
+    private void resizeFood(int count) {
+        lastFoodX = new int[count];
+        lastFoodY = new int[count];
+        lastFoodTypes = new SnakeEngine.FoodType[count];
+        Arrays.fill(lastFoodX, Integer.MIN_VALUE);
+    }
+
+    private void remember(SnakeEngine engine) {
+        lastHead = SnakeBody.pack(engine.segmentX(0), engine.segmentY(0));
+        lastLength = engine.length();
+        if (lastFoodTypes.length != engine.getFoodCount()) resizeFood(engine.getFoodCount());
+        for (int item = 0; item < lastFoodTypes.length; item++) {
+            lastFoodX[item] = engine.getFoodX(item);
+            lastFoodY[item] = engine.getFoodY(item);
+            lastFoodTypes[item] = engine.getFoodType(item);
+        }
+        lastSpeed = engine.getCurrentGameSpeed();
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.*;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import javax.sound.sampled.*;
+
+/**
+ * Plays sound effects with low, steady latency. Each effect is decoded once
+ * into 16-bit mono PCM; a mixer thread sums up to MAX_VOICES playing effects
+ * into a single SourceDataLine, so rapid repeats overlap instead of cutting
+ * each other off.
+ *
+ * play() only bumps a per-effect atomic counter that the mixer drains at the
+ * start of every buffer, so it is safe and cheap to call from the game loop.
+ * If no audio device is available every call is a no-op.
+ */
+public class SoundEngine {
+    private static final float SAMPLE_RATE = 44100f;
+    private static final AudioFormat MIX_FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+    private static final int MAX_SOUNDS = 16;
+    private static final int MAX_VOICES = 8;
+    private static final int FRAMES_PER_BUFFER = 256;  // About 6 ms per mix at 44.1 kHz
+
+    private final short[][] sounds = new short[MAX_SOUNDS][];
+    private final AtomicIntegerArray triggers = new AtomicIntegerArray(MAX_SOUNDS);
+    private int soundCount;
+
+    // Mixer thread only
+    private final short[][] voiceSamples = new short[MAX_VOICES][];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final int[] mix = new int[FRAMES_PER_BUFFER];
+    private final byte[] out = new byte[FRAMES_PER_BUFFER * 2];
+
+    private SourceDataLine line;
+    private Thread mixer;
+    private volatile boolean running;
+
+    /**
+     * Decodes a sound from the classpath (e.g. "/eat.wav") and returns its id
+     * for play(), or -1 if it could not be loaded.
+     */
+    public int load(String resource) {
+        if (soundCount == MAX_SOUNDS) return -1;
+        URL url = getClass().getResource(resource);
+        if (url == null) {
+            System.err.println("Warning: Could not load sound file: " + resource);
+            return -1;
+        }
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(url);
+             AudioInputStream pcm = AudioSystem.getAudioInputStream(MIX_FORMAT, toPcm(source))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = pcm.read(chunk)) > 0) {
+                bytes.write(chunk, 0, read);
+            }
+            byte[] data = bytes.toByteArray();
+            short[] samples = new short[data.length / 2];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) ((data[2 * i] & 0xFF) | (data[2 * i + 1] << 8));
+            }
+            sounds[soundCount] = samples;
+            return soundCount++;
+        } catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+            System.err.println("Warning: Could not load sound file: " + resource);
+            return -1;
+        }
+    }
+
+    /** Converts compressed or non-16-bit sources to 16-bit PCM at their own rate and channel count. */
+    private static AudioInputStream toPcm(AudioInputStream source) {
+        AudioFormat format = source.getFormat();
+        AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(pcm, source);
+    }
+
+    /** Opens the audio device and starts mixing. Returns false if there is no usable device. */
+    public boolean start() {
+        try {
+            line = AudioSystem.getSourceDataLine(MIX_FORMAT);
+            // Two mix buffers in the device: enough to ride out scheduling jitter, short enough to stay responsive
+            line.open(MIX_FORMAT, out.length * 2);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            System.err.println("Warning: No audio output available, sound disabled");
+            line = null;
+            return false;
+        }
+        running = true;
+        mixer = new Thread(this::mixLoop, "Sound Mixer");
+        mixer.setDaemon(true);
+        mixer.setPriority(Thread.MAX_PRIORITY);
+        mixer.start();
+        return true;
+    }
+
+    public void stop() {
+        running = false;
+        if (mixer != null) {
+            try {
+                mixer.join(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mixer = null;
+        }
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+    }
+
+    /** Queues a sound to start with the next mix buffer. Lock-free and allocation-free. */
+    public void play(int sound) {
+        if (sound >= 0 && running) {
+            triggers.incrementAndGet(sound);
+        }
+    }
+
+    private void mixLoop() {
+        while (running) {
+            startTriggeredVoices();
+            mixVoices();
+            // Blocks once the device buffer is full, which paces this thread to real time
+            line.write(out, 0, out.length);
+        }
+    }
+
+    private void startTriggeredVoices() {
+        for (int sound = 0; sound < soundCount; sound++) {
+            int count = triggers.getAndSet(sound, 0);
+            for (int i = 0; i < count; i++) {
+                startVoice(sounds[sound]);
+            }
+        }
+    }
+
+    private void startVoice(short[] samples) {
+        // Take a free voice, or steal the one closest to finishing
+        int chosen = 0;
+        int leastRemaining = Integer.MAX_VALUE;
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSamples[v] == null) {
+                chosen = v;
+                break;
+            }
+            int remaining = voiceSamples[v].length - voicePosition[v];
+            if (remaining < leastRemaining) {
+                leastRemaining = remaining;
+                chosen = v;
+            }
+        }
+        voiceSamples[chosen] = samples;
+        voicePosition[chosen] = 0;
+    }
+
+    private void mixVoices() {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < MAX_VOICES; v++) {
+            short[] samples = voiceSamples[v];
+            if (samples == null) continue;
+            int position = voicePosition[v];
+            int frames = Math.min(FRAMES_PER_BUFFER, samples.length - position);
+            for (int i = 0; i < frames; i++) {
+                mix[i] += samples[position + i];
+            }
+            voicePosition[v] = position + frames;
+            if (voicePosition[v] == samples.length) {
+                voiceSamples[v] = null;
+            }
+        }
+        for (int i = 0; i < FRAMES_PER_BUFFER; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            out[2 * i] = (byte) sample;
+            out[2 * i + 1] = (byte) (sample >> 8);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Follows a game streamed by SpectatorFeed and prints its progress once a
+ * second, along with how many bytes the stream took.
+ *
+ *   java -Dsnake.spectatorPort=7778 App      (the game being watched)
+ *   java Spectator [--host localhost] [--port 7778]
+ */
+public class Spectator {
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = 7778;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        SnapshotDecoder game = new SnapshotDecoder();
+        ByteBuffer in = ByteBuffer.allocateDirect(256 * 1024);
+        long bytes = 0;
+        long lastBytes = 0;
+        int lastTick = 0;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            int read;
+            while ((read = channel.read(in)) >= 0) {
+                bytes += read;
+                in.flip();
+                game.apply(in);
+                in.compact();
+
+                if (System.nanoTime() >= nextReport && game.isSynced()) {
+                    int ticks = game.getTick() - lastTick;
+                    System.out.printf("tick %d  score %d  length %d  food %s at %d,%d%s%s  |  %d bytes/s, %.1f bytes/tick%n",
+                            game.getTick(), game.score(), game.length(), game.getFoodType(),
+                            game.getFoodX(), game.getFoodY(),
+                            game.getFoodCount() > 1 ? " (+" + (game.getFoodCount() - 1) + " more)" : "",
+                            game.isGameOver() ? "  GAME OVER" : "",
+                            bytes - lastBytes, ticks > 0 ? (double) (bytes - lastBytes) / ticks : 0.0);
+                    lastBytes = bytes;
+                    lastTick = game.getTick();
+                    nextReport += 1_000_000_000L;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Streams one game to any number of spectator sockets. Each tick's delta is
+ * encoded once and shared by every subscriber; a newcomer is first sent a
+ * keyframe, encoded at most once per tick however many join.
+ *
+ * Each subscriber gets one gathering write per tick covering, in order, any
+ * bytes its socket couldn't take last time, the keyframe if it needs one, and
+ * the delta. Leftovers are copied into the subscriber's own backlog; a
+ * subscriber whose backlog overflows is dropped rather than buffered without
+ * bound.
+ *
+ * subscribe() may be called from any thread; everything else runs on the
+ * thread that drives the game.
+ */
+public class SpectatorFeed {
+    private static final int BACKLOG_BYTES = 64 * 1024;
+
+    private static class Subscriber {
+        final SocketChannel channel;
+        final ByteBuffer backlog = ByteBuffer.allocateDirect(BACKLOG_BYTES);  // Kept ready to read
+        final ByteBuffer[] views = new ByteBuffer[3];  // backlog, keyframe, delta
+        boolean needsKeyframe = true;
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+            backlog.flip();
+            views[0] = backlog;
+        }
+    }
+
+    private final SnapshotEncoder encoder = new SnapshotEncoder();
+    private final ArrayList<Subscriber> subscribers = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer empty = ByteBuffer.allocateDirect(0);
+    private long bytesSent;
+
+    /** Adds a spectator socket; it is configured non-blocking and starts with the next tick's keyframe. */
+    public void subscribe(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        joining.add(new Subscriber(channel));
+    }
+
+    /** Makes every subscriber start over from a keyframe, e.g. after the engine was replaced or reset. */
+    public void restart() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.needsKeyframe = true;
+        }
+    }
+
+    /** Call once per tick after the engine has stepped. */
+    public void publish(SnakeEngine engine) {
+        ByteBuffer delta = encoder.encodeDelta(engine);
+        Subscriber newcomer;
+        while ((newcomer = joining.poll()) != null) {
+            subscribers.add(newcomer);
+        }
+        if (subscribers.isEmpty()) return;
+
+        ByteBuffer keyframe = null;
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            Subscriber subscriber = subscribers.get(i);
+            if (subscriber.needsKeyframe && keyframe == null) {
+                keyframe = encoder.encodeKeyframe(engine);
+            }
+            if (!send(subscriber, keyframe, delta)) {
+                close(subscriber);
+                subscribers.remove(i);
+            }
+        }
+    }
+
+    private boolean send(Subscriber subscriber, ByteBuffer keyframe, ByteBuffer delta) {
+        ByteBuffer[] views = subscriber.views;
+        // A keyframe already describes this tick, so the delta isn't needed alongside it
+        if (subscriber.needsKeyframe) {
+            views[1] = keyframe.duplicate();
+            views[2] = empty;
+            subscriber.needsKeyframe = false;
+        } else {
+            views[1] = empty;
+            delta.rewind();
+            views[2] = delta;
+        }
+        try {
+            bytesSent += subscriber.channel.write(views);
+        } catch (IOException e) {
+            return false;
+        }
+
+        // Keep whatever didn't fit, behind what's still waiting from before
+        ByteBuffer backlog = subscriber.backlog;
+        int leftover = views[1].remaining() + views[2].remaining();
+        if (leftover == 0) return true;
+        backlog.compact();
+        if (backlog.remaining() < leftover) {
+            return false;
+        }
+        backlog.put(views[1]).put(views[2]);
+        backlog.flip();
+        return true;
+    }
+
+    private static void close(Subscriber subscriber) {
+        try {
+            subscriber.channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+}
@@ -0,0 +1,79 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Every board tile pre-rendered once into one image: the head and body, their
+ * see-through ghost-mode versions, and one tile per food type. The antialiased
+ * rounded corners are rasterized here, so painting a cell is a single blit.
+ * Text is pre-rendered the same way, since switching fonts on a Graphics
+ * allocates every time.
+ */
+public class SpriteAtlas {
+    public static final int HEAD = 0;
+    public static final int BODY = 1;
+    public static final int GHOST_HEAD = 2;
+    public static final int GHOST_BODY = 3;
+    private static final int FIRST_FOOD = 4;  // Followed by one tile per FoodType, in ordinal order
+
+    /** A line of antialiased text rendered once, drawn by its baseline like drawString(). */
+    public static class Text {
+        final int width;
+        private final int ascent;
+        private final BufferedImage image;
+
+        public Text(String text, Font font, Color color, FontMetrics metrics) {
+            width = metrics.stringWidth(text);
+            ascent = metrics.getAscent();
+            image = new BufferedImage(Math.max(1, width), Math.max(1, metrics.getHeight()), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2d.setFont(font);
+            g2d.setColor(color);
+            g2d.drawString(text, 0, ascent);
+            g2d.dispose();
+        }
+
+        public void draw(Graphics2D g2d, int x, int baseline) {
+            g2d.drawImage(image, x, baseline - ascent, null);
+        }
+    }
+
+    private final int cellSize;
+    private final BufferedImage atlas;
+
+    /** Builds the atlas as an image compatible with the given configuration, or a plain ARGB image if it's null. */
+    public SpriteAtlas(int cellSize, GraphicsConfiguration gc) {
+        this.cellSize = cellSize;
+        int tiles = FIRST_FOOD + SnakeEngine.FoodType.values().length;
+        atlas = (gc != null)
+                ? gc.createCompatibleImage(tiles * cellSize, cellSize, Transparency.TRANSLUCENT)
+                : new BufferedImage(tiles * cellSize, cellSize, BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g2d = atlas.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // Brighter green for head, semi-transparent while ghosting
+        drawTile(g2d, HEAD, new Color(0, 220, 0), 8);
+        drawTile(g2d, BODY, Color.GREEN, 8);
+        drawTile(g2d, GHOST_HEAD, new Color(0, 220, 0, 150), 8);
+        drawTile(g2d, GHOST_BODY, new Color(0, 255, 0, 150), 8);
+        for (SnakeEngine.FoodType type : SnakeEngine.FoodType.values()) {
+            drawTile(g2d, foodTile(type), App.foodColor(type), 12);
+        }
+        g2d.dispose();
+    }
+
+    private void drawTile(Graphics2D g2d, int tile, Color color, int arc) {
+        g2d.setColor(color);
+        g2d.fillRoundRect(tile * cellSize, 0, cellSize, cellSize, arc, arc);
+    }
+
+    public static int foodTile(SnakeEngine.FoodType type) {
+        return FIRST_FOOD + type.ordinal();
+    }
+
+    /** Blits a tile with its top-left corner at pixel (x, y). */
+    public void draw(Graphics2D g2d, int tile, int x, int y) {
+        int source = tile * cellSize;
+        g2d.drawImage(atlas, x, y, x + cellSize, y + cellSize, source, 0, source + cellSize, cellSize, null);
+    }
+}
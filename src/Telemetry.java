@@ -0,0 +1,94 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Timing for the running game: how long ticks and frames take, how late ticks
+ * start against their schedule, GC pauses, and how long key presses take to
+ * reach a tick and the screen. Every metric is a lock-free LatencyHistogram,
+ * so recording costs a few atomic increments on the game loop.
+ *
+ * Ticks and food spawns are also emitted as JFR events when running on Java 11
+ * or later with JfrEvents compiled; on Java 8 they are silently skipped.
+ */
+public class Telemetry {
+    /** Receives per-event records; implemented by JfrEvents where JFR is available. */
+    public interface EventSink {
+        void tick(long durationNanos, long lateNanos, int nextDelayMillis);
+        void foodSpawned(String type, int x, int y, int snakeLength);
+    }
+
+    public final LatencyHistogram tickDuration = new LatencyHistogram();
+    public final LatencyHistogram tickLateness = new LatencyHistogram();
+    public final LatencyHistogram renderTime = new LatencyHistogram();
+    public final LatencyHistogram gcPause = new LatencyHistogram();
+    public final LatencyHistogram inputToTick = new LatencyHistogram();
+    public final LatencyHistogram inputToFrame = new LatencyHistogram();
+
+    // Every metric, in the order the HUD and CSV show them
+    static final String[] NAMES = {"tick", "late", "render", "gc", "key>tick", "key>frame"};
+    final LatencyHistogram[] histograms =
+            {tickDuration, tickLateness, renderTime, gcPause, inputToTick, inputToFrame};
+
+    private final EventSink events;
+
+    public Telemetry() {
+        events = loadJfrEvents();
+        watchGcPauses();
+    }
+
+    private static EventSink loadJfrEvents() {
+        try {
+            // Loaded by name so the game still compiles and runs on Java 8
+            return (EventSink) Class.forName("JfrEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private void watchGcPauses() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Concurrent cycles run alongside the game; only stop-the-world collections are pauses
+            if (!(gc instanceof NotificationEmitter) || gc.getName().contains("Concurrent")
+                    || gc.getName().endsWith("Cycles")) {
+                continue;
+            }
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info =
+                            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    gcPause.record(info.getGcInfo().getDuration() * 1_000_000L);
+                }
+            }, null, null);
+        }
+    }
+
+    void tickFinished(long durationNanos, long lateNanos, int nextDelayMillis) {
+        tickDuration.record(durationNanos);
+        tickLateness.record(lateNanos);
+        if (events != null) events.tick(durationNanos, lateNanos, nextDelayMillis);
+    }
+
+    void renderFinished(long durationNanos) {
+        renderTime.record(durationNanos);
+    }
+
+    void foodSpawned(SnakeEngine.FoodType type, int x, int y, int snakeLength) {
+        if (events != null) events.foodSpawned(type.name(), x, y, snakeLength);
+    }
+
+    /** Writes one row per metric with its percentiles in microseconds. */
+    public void writeCsv(Writer out) throws IOException {
+        PrintWriter csv = new PrintWriter(out);
+        csv.println("metric,count,p50_us,p90_us,p99_us,max_us");
+        for (int i = 0; i < NAMES.length; i++) {
+            LatencyHistogram h = histograms[i];
+            csv.printf("%s,%d,%.1f,%.1f,%.1f,%.1f%n", NAMES[i], h.count(), h.percentileNanos(0.50) / 1e3,
+                    h.percentileNanos(0.90) / 1e3, h.percentileNanos(0.99) / 1e3, h.maxNanos() / 1e3);
+        }
+        csv.flush();
+    }
+}
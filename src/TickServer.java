@@ -0,0 +1,351 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts multiplayer games over TCP. Players are grouped into rooms by
+ * difficulty and wall mode; each room is an Arena the server alone advances,
+ * at the difficulty's starting tick rate, and every tick each player is sent
+ * the room's state. Dead snakes respawn after a short delay.
+ *
+ * All sockets are non-blocking and served by one selector thread, so thousands
+ * of connections cost a buffer each rather than a thread each. Room ticks run
+ * on a small pool of scheduler threads. A player whose socket can't keep up
+ * skips frames instead of queueing them, so memory per room stays fixed.
+ *
+ * Protocol: every server message is a 2-byte length followed by the payload.
+ *   Client: 'J' difficulty-ordinal wrap-flag    join a room
+ *           'U' | 'D' | 'L' | 'R'               turn
+ *   Server: 'W' room(int) slot width height tick-millis(short)
+ *           'S' tick(int) snakes { alive direction length(short) head-x head-y } foods { x y type }
+ *
+ *   java TickServer [--port 7777] [--threads N] [--players-per-room 4]
+ */
+public class TickServer {
+    static final int BOARD_WIDTH = 35;
+    static final int BOARD_HEIGHT = 35;
+    static final int FOOD_PER_ROOM = 2;
+    static final int RESPAWN_TICKS = 10;
+    private static final int REPORT_SECONDS = 5;
+
+    private final int playersPerRoom;
+    private final ScheduledExecutorService scheduler;
+    private final Room[] openRooms = new Room[SnakeEngine.Difficulty.values().length * 2]; // Selector thread only
+    private final AtomicInteger nextRoomId = new AtomicInteger();
+    private final AtomicInteger liveRooms = new AtomicInteger();
+    private final AtomicInteger players = new AtomicInteger();
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong framesSkipped = new AtomicLong();
+    private final LatencyHistogram tickDuration = new LatencyHistogram();
+    private final LatencyHistogram tickLateness = new LatencyHistogram();
+
+    /** One player's socket. */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(64);
+        ByteBuffer out;  // The frame being sent; at most one is ever held
+        Room room;
+        int slot;
+        volatile char pendingTurn;  // Latest turn from the client, applied on the room's next tick
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /** One game and the players in it. All methods run under the room's lock. */
+    private class Room {
+        final int id;
+        final int tickMillis;
+        final Arena arena;
+        final Connection[] players;
+        final int[] respawnIn;
+        final ByteBuffer frame;
+        ScheduledFuture<?> task;
+        long nextDeadline;
+        int playerCount;
+
+        Room(SnakeEngine.Difficulty difficulty, boolean wrapAround) {
+            id = nextRoomId.incrementAndGet();
+            tickMillis = difficulty.initialGameSpeed;
+            players = new Connection[playersPerRoom];
+            respawnIn = new int[playersPerRoom];
+            frame = ByteBuffer.allocate(16 + playersPerRoom * 6 + FOOD_PER_ROOM * 3);
+            arena = new Arena(BOARD_WIDTH, BOARD_HEIGHT, wrapAround, playersPerRoom, FOOD_PER_ROOM,
+                    FoodOdds.DEFAULT, new Random());
+        }
+
+        synchronized boolean isFull() {
+            return playerCount == players.length;
+        }
+
+        synchronized void join(Connection connection) {
+            int slot = arena.addSnake();
+            players[slot] = connection;
+            respawnIn[slot] = 0;  // The slot's last player may have left mid-countdown
+            playerCount++;
+            connection.room = this;
+            connection.slot = slot;
+            connection.out = ByteBuffer.allocate(frame.capacity());
+            connection.out.flip();
+            frame.clear();
+            frame.putShort((short) 10).put((byte) 'W').putInt(id).put((byte) slot)
+                    .put((byte) BOARD_WIDTH).put((byte) BOARD_HEIGHT).putShort((short) tickMillis);
+            frame.flip();
+            send(connection, frame);
+            // A failed welcome has already removed the player; don't start ticking a room it left empty
+            if (connection.room != this) return;
+            if (task == null) {
+                liveRooms.incrementAndGet();
+                nextDeadline = System.nanoTime() + tickMillis * 1_000_000L;
+                task = scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void leave(Connection connection) {
+            if (connection.room != this) return;
+            connection.room = null;
+            arena.removeSnake(connection.slot);
+            players[connection.slot] = null;
+            if (--playerCount == 0 && task != null) {
+                task.cancel(false);
+                task = null;
+                liveRooms.decrementAndGet();
+            }
+        }
+
+        synchronized void tick() {
+            long start = System.nanoTime();
+            tickLateness.record(start - nextDeadline);
+            nextDeadline += tickMillis * 1_000_000L;
+
+            for (int i = 0; i < players.length; i++) {
+                Connection player = players[i];
+                if (player == null) continue;
+                char turn = player.pendingTurn;
+                if (turn != 0) {
+                    player.pendingTurn = 0;
+                    arena.setDirection(i, turn);
+                }
+                if (!arena.isAlive(i) && ++respawnIn[i] >= RESPAWN_TICKS) {
+                    respawnIn[i] = 0;
+                    arena.respawn(i);
+                }
+            }
+            arena.step();
+
+            encodeState();
+            for (Connection player : players) {
+                if (player != null) {
+                    frame.rewind();
+                    send(player, frame);
+                }
+            }
+            ticks.incrementAndGet();
+            tickDuration.record(System.nanoTime() - start);
+        }
+
+        private void encodeState() {
+            frame.clear();
+            frame.putShort((short) 0).put((byte) 'S').putInt((int) arena.getTick());
+            frame.put((byte) arena.capacity());
+            for (int i = 0; i < arena.capacity(); i++) {
+                boolean alive = arena.isAlive(i);
+                frame.put((byte) (alive ? 1 : 0)).put((byte) arena.getDirection(i))
+                        .putShort((short) arena.length(i))
+                        .put((byte) (alive ? arena.segmentX(i, 0) : 0)).put((byte) (alive ? arena.segmentY(i, 0) : 0));
+            }
+            frame.put((byte) arena.foodCount());
+            for (int f = 0; f < arena.foodCount(); f++) {
+                int cell = arena.foodCell(f);
+                SnakeEngine.FoodType type = arena.foodType(f);
+                frame.put((byte) (cell % BOARD_WIDTH)).put((byte) (cell / BOARD_WIDTH))
+                        .put((byte) (type == null ? -1 : type.ordinal()));
+            }
+            frame.putShort(0, (short) (frame.position() - 2));
+            frame.flip();
+        }
+
+        /** Sends a frame, or skips it if the player's previous frame hasn't drained yet. */
+        private void send(Connection connection, ByteBuffer message) {
+            try {
+                if (connection.out.hasRemaining()) {
+                    bytesSent.addAndGet(connection.channel.write(connection.out));
+                    if (connection.out.hasRemaining()) {
+                        framesSkipped.incrementAndGet();
+                        return;
+                    }
+                }
+                connection.out.clear();
+                connection.out.put(message);
+                connection.out.flip();
+                bytesSent.addAndGet(connection.channel.write(connection.out));
+            } catch (IOException e) {
+                // Closing cancels the selector key, so the player has to be removed here
+                closeQuietly(connection.channel);
+                if (connection.room == this) {
+                    leave(connection);
+                    TickServer.this.players.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    public TickServer(int threads, int playersPerRoom) {
+        this.playersPerRoom = playersPerRoom;
+        this.scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Room Ticks");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Accepts and reads connections on the calling thread until it is interrupted. */
+    public void serve(int port) throws IOException {
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        System.out.println("Listening on port " + port);
+
+        long nextReport = System.nanoTime() + REPORT_SECONDS * 1_000_000_000L;
+        while (!Thread.currentThread().isInterrupted()) {
+            selector.select(1000);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) {
+                    accept(server, selector);
+                } else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+            if (System.nanoTime() >= nextReport) {
+                report();
+                nextReport += REPORT_SECONDS * 1_000_000_000L;
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server, Selector selector) throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    private void read(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        int read;
+        try {
+            read = connection.channel.read(connection.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            disconnect(key, connection);
+            return;
+        }
+
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.hasRemaining()) {
+            byte command = in.get(in.position());
+            if (command == 'J') {
+                if (in.remaining() < 3) break;  // Wait for the rest of the message
+                in.get();
+                int difficulty = in.get();
+                boolean wrapAround = in.get() != 0;
+                if (connection.room == null && difficulty >= 0 && difficulty < SnakeEngine.Difficulty.values().length) {
+                    join(connection, SnakeEngine.Difficulty.values()[difficulty], wrapAround);
+                }
+            } else {
+                in.get();
+                if (command == 'U' || command == 'D' || command == 'L' || command == 'R') {
+                    connection.pendingTurn = (char) command;
+                }
+            }
+        }
+        in.compact();
+    }
+
+    private void join(Connection connection, SnakeEngine.Difficulty difficulty, boolean wrapAround) {
+        int mode = difficulty.ordinal() * 2 + (wrapAround ? 1 : 0);
+        Room room = openRooms[mode];
+        if (room == null || room.isFull()) {
+            room = new Room(difficulty, wrapAround);
+            openRooms[mode] = room;
+        }
+        room.join(connection);
+        players.incrementAndGet();
+    }
+
+    private void disconnect(SelectionKey key, Connection connection) {
+        key.cancel();
+        closeQuietly(connection.channel);
+        Room room = connection.room;
+        if (room != null) {
+            room.leave(connection);
+            players.decrementAndGet();
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    private long lastTicks;
+    private long lastBytes;
+
+    private void report() {
+        long totalTicks = ticks.get();
+        long totalBytes = bytesSent.get();
+        System.out.printf("%d rooms, %d players, %,d ticks/s, %.1f MB/s out, %d frames skipped | "
+                        + "tick p50 %.1f us p99 %.1f us | late p50 %.2f ms p99 %.2f ms%n",
+                liveRooms.get(), players.get(), (totalTicks - lastTicks) / REPORT_SECONDS,
+                (totalBytes - lastBytes) / 1e6 / REPORT_SECONDS, framesSkipped.get(),
+                tickDuration.percentileNanos(0.50) / 1e3, tickDuration.percentileNanos(0.99) / 1e3,
+                tickLateness.percentileNanos(0.50) / 1e6, tickLateness.percentileNanos(0.99) / 1e6);
+        lastTicks = totalTicks;
+        lastBytes = totalBytes;
+        tickDuration.reset();
+        tickLateness.reset();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 7777;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int playersPerRoom = 4;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--players-per-room": playersPerRoom = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        new TickServer(threads, playersPerRoom).serve(port);
+    }
+}
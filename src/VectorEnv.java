@@ -0,0 +1,463 @@
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many independent games stepped together, for training agents. Every board's
+ * state lives in shared primitive arrays indexed by board rather than in a
+ * SnakeEngine per board, and the rules are SnakeEngine's exactly: given the
+ * same seed and actions, board b plays the same game as a SnakeEngine built on
+ * new Random(seed(b)). Each board runs its own copy of java.util.Random's
+ * generator so the food it spawns matches too.
+ *
+ * Observations are three planes per board, each width*height floats:
+ * snake body (head included), head, and food, 1 where present and 0 elsewhere.
+ * They are written straight into a buffer the caller binds once. After the
+ * first write only the cells a step changed are touched, so the caller must
+ * leave the buffer alone between steps.
+ *
+ * The reward for a step is the change in score, so eating gives the food's
+ * growth value (shrink food gives whatever it actually took off), and dying
+ * gives -1. A board that dies starts a new game in the same step, and its
+ * observation already shows the new game.
+ */
+public class VectorEnv {
+    public static final int PLANES = 3;
+    public static final int BODY_PLANE = 0;
+    public static final int HEAD_PLANE = 1;
+    public static final int FOOD_PLANE = 2;
+    public static final int KEEP_DIRECTION = -1;  // Action that leaves the direction alone
+
+    private static final SnakeEngine.FoodType[] FOOD_TYPES = SnakeEngine.FoodType.values();
+    private static final int BOARDS_PER_TASK = 128;
+    private static final long MULTIPLIER = 0x5DEECE66DL;  // java.util.Random's LCG
+    private static final long ADDEND = 0xBL;
+    private static final long SEED_MASK = (1L << 48) - 1;
+    private static final int BOOST_TICKS =
+            (SnakeEngine.BOOST_DURATION + SnakeEngine.BOOST_SPEED - 1) / SnakeEngine.BOOST_SPEED;
+
+    private final int boards;
+    private final int width;
+    private final int height;
+    private final int cells;
+    private final boolean wrapAround;
+    private final int initialGameSpeed;
+    private final int speedIncrement;
+    private final FoodOdds foodOdds;
+    private final ForkJoinPool pool;  // May be null, to step on the calling thread
+
+    // Per board, indexed [board]
+    private final long[] seeds;
+    private final char[] directions;
+    private final int[] headPos;
+    private final int[] lengths;
+    private final int[] freeCounts;
+    private final int[] offBoardSegments;
+    private final int[] foodX;
+    private final int[] foodY;
+    private final byte[] foodTypes;    // FoodType ordinal, or -1 when the board is full
+    private final int[] gameSpeeds;
+    private final int[] boostTicks;    // Ticks left on each power-up, as on SnakeEngine's scheduler
+    private final int[] ghostTicks;
+    private final long[] gameSeeds;    // Each board's starting seed, for seed(b)
+
+    // Per board blocks: [board * ringSize + i], [board * cells + i], [board * words + i]
+    private final int ringSize;
+    private final int ringMask;
+    private final int[] rings;         // Packed segments, head at headPos, as in SnakeBody
+    private final int words;
+    private final long[] occupied;
+    private final int[] freeCells;
+    private final int[] freeSlots;
+
+    private float[] observationArray;
+    private FloatBuffer observationBuffer;
+
+    public VectorEnv(int boards, int width, int height, boolean wrapAround, SnakeEngine.Difficulty difficulty,
+                     FoodOdds foodOdds, long seed, ForkJoinPool pool) {
+        this.boards = boards;
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.wrapAround = wrapAround;
+        this.initialGameSpeed = difficulty.initialGameSpeed;
+        this.speedIncrement = difficulty.speedIncrement;
+        this.foodOdds = foodOdds;
+        this.pool = pool;
+
+        seeds = new long[boards];
+        directions = new char[boards];
+        headPos = new int[boards];
+        lengths = new int[boards];
+        freeCounts = new int[boards];
+        offBoardSegments = new int[boards];
+        foodX = new int[boards];
+        foodY = new int[boards];
+        foodTypes = new byte[boards];
+        gameSpeeds = new int[boards];
+        boostTicks = new int[boards];
+        ghostTicks = new int[boards];
+        gameSeeds = new long[boards];
+
+        // Stacked bonus tails can take a snake two past the cell count
+        ringSize = Integer.highestOneBit(cells + 3) << 1;
+        ringMask = ringSize - 1;
+        rings = new int[boards * ringSize];
+        words = (cells + 63) >>> 6;
+        occupied = new long[boards * words];
+        freeCells = new int[boards * cells];
+        freeSlots = new int[boards * cells];
+
+        for (int b = 0; b < boards; b++) {
+            gameSeeds[b] = BatchSimulator.gameSeed(seed, b);
+            seeds[b] = (gameSeeds[b] ^ MULTIPLIER) & SEED_MASK;
+            resetBoard(b);
+        }
+    }
+
+    /** The seed board b's generator started from, for replaying it on a SnakeEngine. */
+    public long seed(int b) {
+        return gameSeeds[b];
+    }
+
+    /** Writes every board into the array, which then receives each step's changes. */
+    public void bind(float[] observations) {
+        checkCapacity(observations.length);
+        observationArray = observations;
+        observationBuffer = null;
+        writeAllObservations();
+    }
+
+    /** Writes every board into the buffer (heap or direct), which then receives each step's changes. */
+    public void bind(FloatBuffer observations) {
+        checkCapacity(observations.capacity());
+        observationArray = null;
+        observationBuffer = observations;
+        writeAllObservations();
+    }
+
+    private void checkCapacity(int capacity) {
+        if (capacity < boards * observationSize()) {
+            throw new IllegalArgumentException("Need " + boards * observationSize() + " floats for the observations");
+        }
+    }
+
+    /**
+     * Advances every board by one tick. actions[b] indexes SnakePolicy.DIRECTIONS
+     * (reversals are ignored, as on the keyboard) or is KEEP_DIRECTION. Rewards
+     * and game-over flags are written to rewards[b] and dones[b].
+     */
+    public void stepAll(int[] actions, float[] rewards, boolean[] dones) {
+        if (pool == null || boards <= BOARDS_PER_TASK) {
+            stepRange(0, boards, actions, rewards, dones);
+        } else {
+            pool.invoke(new StepTask(actions, rewards, dones, 0, boards));
+        }
+    }
+
+    private class StepTask extends RecursiveAction {
+        private final int[] actions;
+        private final float[] rewards;
+        private final boolean[] dones;
+        private final int from;
+        private final int to;
+
+        StepTask(int[] actions, float[] rewards, boolean[] dones, int from, int to) {
+            this.actions = actions;
+            this.rewards = rewards;
+            this.dones = dones;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BOARDS_PER_TASK) {
+                stepRange(from, to, actions, rewards, dones);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(actions, rewards, dones, from, mid),
+                    new StepTask(actions, rewards, dones, mid, to));
+        }
+    }
+
+    private void stepRange(int from, int to, int[] actions, float[] rewards, boolean[] dones) {
+        for (int b = from; b < to; b++) {
+            int before = lengths[b];
+            if (step(b, actions[b])) {
+                rewards[b] = lengths[b] - before;
+                dones[b] = false;
+            } else {
+                rewards[b] = -1f;
+                dones[b] = true;
+                eraseObservation(b);
+                resetBoard(b);
+            }
+        }
+    }
+
+    // --- One board's rules, following SnakeEngine.step() line for line ---
+
+    /** Steps board b; returns false if the snake died. */
+    private boolean step(int b, int action) {
+        if (action >= 0) setDirection(b, SnakePolicy.DIRECTIONS[action]);
+
+        // Power-ups wear off after the tick that used them up
+        if (boostTicks[b] > 0) boostTicks[b]--;
+        if (ghostTicks[b] > 0) ghostTicks[b]--;
+
+        int x = SnakeBody.unpackX(segment(b, 0));
+        int y = SnakeBody.unpackY(segment(b, 0));
+        switch (directions[b]) {
+            case 'U': y--; break;
+            case 'D': y++; break;
+            case 'L': x--; break;
+            case 'R': x++; break;
+        }
+        if (wrapAround) {
+            if (x < 0) x = width - 1;
+            else if (x >= width) x = 0;
+            if (y < 0) y = height - 1;
+            else if (y >= height) y = 0;
+        }
+
+        if ((isSnakeAt(b, x, y) && !tailVacates(b, x, y))
+                || (!wrapAround && ghostTicks[b] == 0 && !isOnBoard(x, y))) {
+            return false;
+        }
+
+        int head = segment(b, 0);
+        if (isOnBoard(SnakeBody.unpackX(head), SnakeBody.unpackY(head))) {
+            put(b, HEAD_PLANE, SnakeBody.unpackY(head) * width + SnakeBody.unpackX(head), 0f);
+        }
+        if (foodTypes[b] >= 0 && x == foodX[b] && y == foodY[b]) {
+            pushHead(b, x, y);
+            foodEaten(b, FOOD_TYPES[foodTypes[b]]);
+            spawnFood(b);
+        } else {
+            popTail(b);
+            pushHead(b, x, y);
+        }
+        return true;
+    }
+
+    private void setDirection(int b, char direction) {
+        if (!SnakePolicy.isReverse(directions[b], direction)) directions[b] = direction;
+    }
+
+    private void foodEaten(int b, SnakeEngine.FoodType type) {
+        if (type.growthValue > 1) {
+            int tail = segment(b, lengths[b] - 1);
+            for (int i = 0; i < type.growthValue - 1; i++) {
+                rings[b * ringSize + ((headPos[b] - lengths[b]) & ringMask)] = tail;
+                lengths[b]++;
+            }
+        } else if (type.growthValue < 0) {
+            int totalToRemove = -type.growthValue + 1;
+            for (int i = 0; i < totalToRemove && lengths[b] > 3; i++) {
+                popTail(b);
+            }
+        }
+
+        if (type == SnakeEngine.FoodType.SPEED_BOOST && boostTicks[b] == 0) {
+            boostTicks[b] = BOOST_TICKS;
+        }
+        if (boostTicks[b] == 0 && gameSpeeds[b] > SnakeEngine.MIN_GAME_SPEED && speedIncrement > 0) {
+            gameSpeeds[b] -= speedIncrement;
+        }
+        if (type == SnakeEngine.FoodType.GHOST && ghostTicks[b] == 0) {
+            int delay = boostTicks[b] > 0 ? SnakeEngine.BOOST_SPEED : gameSpeeds[b];
+            ghostTicks[b] = (SnakeEngine.GHOST_DURATION + delay - 1) / delay;
+        }
+    }
+
+    private void spawnFood(int b) {
+        if (foodTypes[b] >= 0 && isOnBoard(foodX[b], foodY[b])) {
+            put(b, FOOD_PLANE, foodY[b] * width + foodX[b], 0f);
+        }
+        if (freeCounts[b] == 0) {
+            foodX[b] = -1;
+            foodY[b] = -1;
+            foodTypes[b] = -1;
+            return;
+        }
+        int cell = freeCells[b * cells + nextInt(b, freeCounts[b])];
+        foodX[b] = cell % width;
+        foodY[b] = cell / width;
+        foodTypes[b] = (byte) foodOdds.pick(lengths[b], wrapAround, nextDouble(b)).ordinal();
+        put(b, FOOD_PLANE, cell, 1f);
+    }
+
+    private void resetBoard(int b) {
+        lengths[b] = 0;
+        headPos[b] = 0;
+        offBoardSegments[b] = 0;
+        Arrays.fill(occupied, b * words, (b + 1) * words, 0L);
+        freeCounts[b] = cells;
+        int base = b * cells;
+        for (int i = 0; i < cells; i++) {
+            freeCells[base + i] = i;
+            freeSlots[base + i] = i;
+        }
+        foodTypes[b] = -1;
+        pushHead(b, width / 2, height / 2);
+        directions[b] = 'R';
+        boostTicks[b] = 0;
+        ghostTicks[b] = 0;
+        gameSpeeds[b] = initialGameSpeed;
+        spawnFood(b);
+    }
+
+    private boolean isSnakeAt(int b, int x, int y) {
+        if (isOnBoard(x, y)) {
+            int index = y * width + x;
+            return (occupied[b * words + (index >>> 6)] & (1L << index)) != 0;
+        }
+        if (offBoardSegments[b] == 0) return false;
+        int cell = SnakeBody.pack(x, y);
+        for (int i = 0; i < lengths[b]; i++) {
+            if (segment(b, i) == cell) return true;
+        }
+        return false;
+    }
+
+    private boolean tailVacates(int b, int x, int y) {
+        int size = lengths[b];
+        int tail = segment(b, size - 1);
+        return tail == SnakeBody.pack(x, y) && size > 1 && segment(b, size - 2) != tail;
+    }
+
+    private void pushHead(int b, int x, int y) {
+        headPos[b] = (headPos[b] + 1) & ringMask;
+        rings[b * ringSize + headPos[b]] = SnakeBody.pack(x, y);
+        lengths[b]++;
+        if (isOnBoard(x, y)) {
+            int index = y * width + x;
+            occupied[b * words + (index >>> 6)] |= 1L << index;
+            int base = b * cells;
+            int slot = freeSlots[base + index];
+            int last = freeCells[base + --freeCounts[b]];
+            freeCells[base + slot] = last;
+            freeSlots[base + last] = slot;
+            put(b, BODY_PLANE, index, 1f);
+            put(b, HEAD_PLANE, index, 1f);
+        } else {
+            offBoardSegments[b]++;
+        }
+    }
+
+    private void popTail(int b) {
+        lengths[b]--;
+        int cell = rings[b * ringSize + ((headPos[b] - lengths[b]) & ringMask)];
+        if (lengths[b] > 0 && segment(b, lengths[b] - 1) == cell) return;
+
+        int x = SnakeBody.unpackX(cell);
+        int y = SnakeBody.unpackY(cell);
+        if (isOnBoard(x, y)) {
+            int index = y * width + x;
+            occupied[b * words + (index >>> 6)] &= ~(1L << index);
+            int base = b * cells;
+            freeCells[base + freeCounts[b]] = index;
+            freeSlots[base + index] = freeCounts[b]++;
+            put(b, BODY_PLANE, index, 0f);
+        } else {
+            offBoardSegments[b]--;
+        }
+    }
+
+    private int segment(int b, int i) {
+        return rings[b * ringSize + ((headPos[b] - i) & ringMask)];
+    }
+
+    private boolean isOnBoard(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    // --- java.util.Random, one generator per board ---
+
+    private int next(int b, int bits) {
+        long seed = (seeds[b] * MULTIPLIER + ADDEND) & SEED_MASK;
+        seeds[b] = seed;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    private int nextInt(int b, int bound) {
+        int r = next(b, 31);
+        int m = bound - 1;
+        if ((bound & m) == 0) return (int) ((bound * (long) r) >> 31);
+        for (int u = r; u - (r = u % bound) + m < 0; u = next(b, 31)) {
+            // Reject the top of the range so every value is equally likely
+        }
+        return r;
+    }
+
+    private double nextDouble(int b) {
+        return (((long) next(b, 26) << 27) + next(b, 27)) * 0x1.0p-53;
+    }
+
+    // --- Observations ---
+
+    private void put(int b, int plane, int cell, float value) {
+        int index = (b * PLANES + plane) * cells + cell;
+        if (observationArray != null) {
+            observationArray[index] = value;
+        } else if (observationBuffer != null) {
+            observationBuffer.put(index, value);
+        }
+    }
+
+    private void writeAllObservations() {
+        for (int b = 0; b < boards; b++) {
+            writeObservation(b);
+        }
+    }
+
+    /** Clears the board's snake and food from the observation, ahead of a reset. */
+    private void eraseObservation(int b) {
+        for (int i = 0; i < lengths[b]; i++) {
+            int x = SnakeBody.unpackX(segment(b, i));
+            int y = SnakeBody.unpackY(segment(b, i));
+            if (isOnBoard(x, y)) {
+                put(b, BODY_PLANE, y * width + x, 0f);
+                put(b, HEAD_PLANE, y * width + x, 0f);
+            }
+        }
+        if (foodTypes[b] >= 0) put(b, FOOD_PLANE, foodY[b] * width + foodX[b], 0f);
+    }
+
+    private void writeObservation(int b) {
+        for (int plane = 0; plane < PLANES; plane++) {
+            for (int cell = 0; cell < cells; cell++) {
+                put(b, plane, cell, 0f);
+            }
+        }
+        for (int index = 0; index < cells; index++) {
+            if ((occupied[b * words + (index >>> 6)] & (1L << index)) != 0) put(b, BODY_PLANE, index, 1f);
+        }
+        int head = segment(b, 0);
+        if (isOnBoard(SnakeBody.unpackX(head), SnakeBody.unpackY(head))) {
+            put(b, HEAD_PLANE, SnakeBody.unpackY(head) * width + SnakeBody.unpackX(head), 1f);
+        }
+        if (foodTypes[b] >= 0) put(b, FOOD_PLANE, foodY[b] * width + foodX[b], 1f);
+    }
+
+    public int boardCount() { return boards; }
+    /** Floats per board in the observation buffer. */
+    public int observationSize() { return PLANES * cells; }
+    public int getBoardWidth() { return width; }
+    public int getBoardHeight() { return height; }
+    public int length(int b) { return lengths[b]; }
+    public int score(int b) { return lengths[b] - 1; }
+    public char getDirection(int b) { return directions[b]; }
+    public int segmentX(int b, int i) { return SnakeBody.unpackX(segment(b, i)); }
+    public int segmentY(int b, int i) { return SnakeBody.unpackY(segment(b, i)); }
+    public int getFoodX(int b) { return foodX[b]; }
+    public int getFoodY(int b) { return foodY[b]; }
+    public SnakeEngine.FoodType getFoodType(int b) {
+        return foodTypes[b] < 0 ? null : FOOD_TYPES[foodTypes[b]];
+    }
+    public int getBoostRemaining(int b) { return boostTicks[b]; }
+    public int getGhostRemaining(int b) { return ghostTicks[b]; }
+}